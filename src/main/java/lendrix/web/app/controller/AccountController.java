@@ -1,25 +1,39 @@
 package lendrix.web.app.controller;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import lendrix.web.app.dto.AccountDto;
+import lendrix.web.app.dto.BatchTransferDto;
+import lendrix.web.app.dto.BatchTransferResultDto;
 import lendrix.web.app.dto.ConvertDto;
 import lendrix.web.app.dto.DepositDto;
 import lendrix.web.app.dto.TransferDto;
 import lendrix.web.app.entity.Account;
+import lendrix.web.app.entity.QueuedTransfer;
 import lendrix.web.app.entity.Transaction;
 import lendrix.web.app.entity.User;
 import lendrix.web.app.service.AccountService;
+import lendrix.web.app.service.AsyncTransferService;
+import lendrix.web.app.service.IdempotencyService;
+import lendrix.web.app.service.SpendCounterService;
 import lendrix.web.app.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 
@@ -30,6 +44,8 @@ public class AccountController {
 
     private final AccountService accountService;
     private final TransactionService transactionService;
+    private final IdempotencyService idempotencyService;
+    private final AsyncTransferService asyncTransferService;
 
     /**
     Create a new account for the logged-in user.
@@ -56,30 +72,131 @@ public class AccountController {
         return ResponseEntity.ok(accountService.getUserAccounts(user.getUid()));
     }
 
+    /**
+    Turn hot-account mode on or off for one of the user's accounts.
+    Hot accounts take incoming transfers into balance slots so they don't queue on one row.
+     */
+    @PostMapping("/{code}/hot")
+    public ResponseEntity<?> setHotMode(@PathVariable String code, @RequestParam boolean enabled, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+
+        try {
+            return ResponseEntity.ok(accountService.setHotMode(code, enabled, user));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
     /**
     Transfer funds between accounts (user-to-user or own accounts).
     Includes fraud prevention: daily & weekly limits.
+    Retries with the same Idempotency-Key return the original transaction.
      */
     @PostMapping("/transfer")
-    public ResponseEntity<?> transferFunds(@RequestBody TransferDto transferDto, Authentication authentication) {
+    public ResponseEntity<?> transferFunds(@RequestBody TransferDto transferDto,
+                                           @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                           Authentication authentication) {
         User user = (User) authentication.getPrincipal();
 
         try {
             // Fraud prevention checks
-            if (!transactionService.isWithinDailyLimit(user.getUsername(), transferDto.getAmount())) {
+            BigDecimal limitAmount = transactionService.limitAmount(user.getUid(), List.of(transferDto));
+            if (!transactionService.isWithinDailyLimit(user.getUid(), limitAmount)) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body("Daily transfer limit exceeded.");
             }
 
-            if (!transactionService.isWithinWeeklyLimit(user.getUsername(), transferDto.getAmount())) {
+            if (!transactionService.isWithinWeeklyLimit(user.getUid(), limitAmount)) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body("Weekly transfer limit exceeded.");
             }
 
             // Perform transfer
-            Transaction transaction = accountService.transferFunds(transferDto, user);
+            Transaction transaction = idempotencyService.execute(user, "transfer", idempotencyKey, transferDto,
+                    () -> accountService.transferFunds(transferDto, user));
             return ResponseEntity.ok(transaction);
 
+        } catch (IdempotencyService.KeyReusedException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+        } catch (SpendCounterService.LimitExceededException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    /**
+    Queue a transfer for the async workers and answer right away with 202 and the transfer id.
+    The same fraud checks as /transfer run before the transfer is accepted.
+     */
+    @PostMapping("/transfer/async")
+    public ResponseEntity<?> transferFundsAsync(@RequestBody TransferDto transferDto, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+
+        try {
+            // Fraud prevention checks
+            BigDecimal limitAmount = transactionService.limitAmount(user.getUid(), List.of(transferDto));
+            if (!transactionService.isWithinDailyLimit(user.getUid(), limitAmount)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body("Daily transfer limit exceeded.");
+            }
+
+            if (!transactionService.isWithinWeeklyLimit(user.getUid(), limitAmount)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body("Weekly transfer limit exceeded.");
+            }
+
+            QueuedTransfer transfer = asyncTransferService.enqueue(transferDto, user);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(transfer);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    /**
+    Status of a transfer queued through /transfer/async.
+     */
+    @GetMapping("/transfer/{id}")
+    public ResponseEntity<?> getQueuedTransfer(@PathVariable String id, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+
+        try {
+            return ResponseEntity.ok(asyncTransferService.getTransfer(id, user));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    /**
+    Transfer funds to many recipients in one call (payroll, payouts).
+    The daily & weekly limits apply to the total of the batch.
+    Returns one result per item, in request order.
+     */
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<?> transferFundsBatch(@RequestBody BatchTransferDto batchTransferDto, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+
+        try {
+            BigDecimal total = transactionService.limitAmount(user.getUid(),
+                    batchTransferDto.getTransfers() == null ? List.of() : batchTransferDto.getTransfers());
+
+            // Fraud prevention checks
+            if (!transactionService.isWithinDailyLimit(user.getUid(), total)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body("Daily transfer limit exceeded.");
+            }
+
+            if (!transactionService.isWithinWeeklyLimit(user.getUid(), total)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body("Weekly transfer limit exceeded.");
+            }
+
+            List<BatchTransferResultDto> results = accountService.transferFundsBatch(batchTransferDto, user);
+            return ResponseEntity.ok(results);
+
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
@@ -94,29 +211,110 @@ public class AccountController {
     }
 
     /**
-    Convert currency within the user's own accounts.
+    Rate for converting one unit of from into to.
+     */
+    @GetMapping("/rates/{from}/{to}")
+    public ResponseEntity<?> getCrossRate(@PathVariable String from, @PathVariable String to) {
+        try {
+            return ResponseEntity.ok(accountService.getCrossRate(from.toUpperCase(), to.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+    Historical rates (units per USD) of one currency: the rate in effect at `at`,
+    or the rates between `from` and `to` (default: the last 30 days) for charting.
+     */
+    @GetMapping("/rates/history/{currency}")
+    public ResponseEntity<?> getRateHistory(@PathVariable String currency,
+                                            @RequestParam(required = false) Instant at,
+                                            @RequestParam(required = false) Instant from,
+                                            @RequestParam(required = false) Instant to,
+                                            @RequestParam(defaultValue = "500") int maxPoints) {
+        String code = currency.toUpperCase();
+        if (at != null) {
+            return accountService.getRateAt(code, at)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        }
+        Instant end = to == null ? Instant.now() : to;
+        Instant start = from == null ? end.minus(Duration.ofDays(30)) : from;
+        return ResponseEntity.ok(accountService.getRateHistory(code, start, end, Math.min(maxPoints, 10_000)));
+    }
+
+    /**
+    Quote a conversion: returns the locked rate, fee, received amount and expiry.
+    Pass the quote id to /convert to execute it on those terms.
+     */
+    @PostMapping("/convert/quote")
+    public ResponseEntity<?> quoteConversion(@RequestBody ConvertDto convertDto, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        try {
+            return ResponseEntity.ok(accountService.quoteConversion(convertDto, user));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+    Convert currency within the user's own accounts, at live rates or on a quote (quoteId).
+    Retries with the same Idempotency-Key return the original transaction.
      */
     @PostMapping("/convert")
-    public ResponseEntity<?> convertCurrency(@RequestBody ConvertDto convertDto, Authentication authentication) {
+    public ResponseEntity<?> convertCurrency(@RequestBody ConvertDto convertDto,
+                                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                             Authentication authentication) {
         User user = (User) authentication.getPrincipal();
         try {
-            Transaction transaction = accountService.convertCurrency(convertDto, user);
+            Transaction transaction = idempotencyService.execute(user, "convert", idempotencyKey, convertDto,
+                    () -> accountService.convertCurrency(convertDto, user));
             return ResponseEntity.ok(transaction);
+        } catch (IdempotencyService.KeyReusedException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
     }
 
+    /**
+    Balance of one of the user's accounts at a past moment (ISO date-time, e.g. 2026-01-31T23:59:59).
+     */
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<?> getBalanceAt(@PathVariable String id,
+                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at,
+                                          Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+
+        try {
+            return ResponseEntity.ok(accountService.getBalanceAt(id, at, user));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     /**
     Deposit money into an account (for later Stripe integration).
+    Retries with the same Idempotency-Key return the original transaction.
      */
     @PostMapping("/deposit")
-    public ResponseEntity<?> deposit(@RequestBody DepositDto depositDto, Authentication authentication) {
+    public ResponseEntity<?> deposit(@RequestBody DepositDto depositDto,
+                                     @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                     Authentication authentication) {
         User user = (User) authentication.getPrincipal();
 
         try {
-            Transaction transaction = accountService.deposit(depositDto, user);
+            Transaction transaction = idempotencyService.execute(user, "deposit", idempotencyKey, depositDto,
+                    () -> accountService.deposit(depositDto, user));
             return ResponseEntity.ok(transaction);
+        } catch (IdempotencyService.KeyReusedException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
@@ -32,7 +32,7 @@ public class CardController {
     @GetMapping
     public ResponseEntity<Card> getCard(Authentication authentication) {
         User user = (User) authentication.getPrincipal();
-        return ResponseEntity.ok(cardService.getCard(user));
+        return ResponseEntity.ok(cardService.viewCard(user));
     }
 
     /**
@@ -36,7 +36,8 @@ public class MoneyRequestController {
             MoneyRequest request = moneyRequestService.requestMoney(
                     requester.getUsername(),
                     requestDto.getRecipientUsername(),
-                    requestDto.getAmount()
+                    requestDto.getAmount(),
+                    requestDto.getCurrency()
             );
             return ResponseEntity.ok(request);
         } catch (RuntimeException e) {
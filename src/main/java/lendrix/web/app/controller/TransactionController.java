@@ -1,21 +1,159 @@
 package lendrix.web.app.controller;
 
-import lendrix.web.app.entity.Transaction;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+
+import lendrix.web.app.entity.User;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+import lendrix.web.app.service.SpendingRollupService;
+import lendrix.web.app.service.TransactionExportService;
 import lendrix.web.app.service.TransactionService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/transactions")
 public class TransactionController {
+    private static final String ADMIN = "ADMIN";
+
     private final TransactionService transactionService;
+    private final TransactionExportService transactionExportService;
+    private final SpendingRollupService spendingRollupService;
 
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, TransactionExportService transactionExportService,
+                                 SpendingRollupService spendingRollupService) {
         this.transactionService = transactionService;
+        this.transactionExportService = transactionExportService;
+        this.spendingRollupService = spendingRollupService;
+    }
+
+    //Current user's transactions, newest first; follow nextCursor for older pages
+    @GetMapping
+    public ResponseEntity<?> getTransactions(@RequestParam(required = false) Type type,
+                                              @RequestParam(required = false) Status status,
+                                              @RequestParam(required = false) String accountId,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer limit,
+                                              Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        try {
+            return ResponseEntity.ok(transactionService.getTransactionPage(user.getUid(), type, status, accountId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (UncheckedIOException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Archive unavailable");
+        }
     }
 
+    //Current user's transactions whose description or counterparty match q, newest first
+    @GetMapping("/search")
+    public ResponseEntity<?> searchTransactions(@RequestParam String q,
+                                                 @RequestParam(required = false) Integer limit,
+                                                 Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        try {
+            return ResponseEntity.ok(transactionService.searchTransactions(user.getUid(), q, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    //A user's transactions, newest first; only the user themselves and admins may read them
     @GetMapping("/history/{username}")
-    public List<Transaction> getUserTransactionHistory(@PathVariable String username) {
-        return transactionService.getUserTransactionHistory(username);
+    public ResponseEntity<?> getUserTransactionHistory(@PathVariable String username,
+                                                        @RequestParam(required = false) Type type,
+                                                        @RequestParam(required = false) Status status,
+                                                        @RequestParam(required = false) String accountId,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        boolean admin = authentication.getAuthorities().stream().anyMatch(authority -> ADMIN.equals(authority.getAuthority()));
+        if (!admin && !user.getUsername().equals(username)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("You can only view your own transaction history");
+        }
+        try {
+            return ResponseEntity.ok(transactionService.getUserTransactionHistory(username, type, status, accountId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (UncheckedIOException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Archive unavailable");
+        }
+    }
+
+    //Current user's full history as a download (format=csv|ndjson), streamed as it is read; 429 while too many exports run
+    @GetMapping("/export")
+    public ResponseEntity<?> exportTransactions(@RequestParam(defaultValue = "csv") String format,
+                                                 @RequestParam(defaultValue = "false") boolean gzip,
+                                                 Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        TransactionExportService.Format exportFormat;
+        try {
+            exportFormat = TransactionExportService.parseFormat(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        if (!transactionExportService.tryAcquireSlot()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body("Too many exports in progress, try again later");
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                transactionExportService.export(user.getUid(), exportFormat, gzip, out);
+            } finally {
+                transactionExportService.releaseSlot();
+            }
+        };
+        String contentType = gzip ? "application/gzip" : exportFormat.getContentType() + ";charset=UTF-8";
+        String filename = "transactions." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    //Current user's completed transactions per day, currency and type between from and to (default: this month so far)
+    @GetMapping("/insights")
+    public ResponseEntity<?> getInsights(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                         Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.withDayOfMonth(1) : from;
+        try {
+            return ResponseEntity.ok(spendingRollupService.insights(user.getUid(), start, end));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    //Months moved to cold storage; their transactions are read from the archive on demand
+    @GetMapping("/archive")
+    public ResponseEntity<?> getArchivedMonths() {
+        try {
+            return ResponseEntity.ok(transactionService.getArchivedMonths());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Archive unavailable");
+        }
+    }
+
+    @GetMapping("/archive/{month}")
+    public ResponseEntity<?> getArchivedTransactions(@PathVariable String month, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        try {
+            return ResponseEntity.ok(transactionService.getArchivedTransactions(user.getUid(), month));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Archive unavailable");
+        }
     }
-} 
\ No newline at end of file
+}
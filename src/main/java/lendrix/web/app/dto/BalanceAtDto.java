@@ -0,0 +1,29 @@
+package lendrix.web.app.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceAtDto {
+
+    private String accountId;
+
+    private String code;
+
+    private LocalDateTime at;
+
+    private BigDecimal balance;
+
+    private LocalDate snapshotDay;   // End-of-day snapshot the balance was rolled forward from, null if none
+}
@@ -0,0 +1,17 @@
+package lendrix.web.app.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferDto {
+
+    private List<TransferDto> transfers; // Each item is processed like a single /accounts/transfer call
+}
@@ -0,0 +1,24 @@
+package lendrix.web.app.dto;
+
+import lendrix.web.app.enums.Status;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchTransferResultDto {
+
+    private int index;            // Position of the item in the request
+
+    private Status status;        // COMPLETED or FAILED
+
+    private String transactionId; // Sender-side transaction when completed
+
+    private String error;         // Reason when failed
+}
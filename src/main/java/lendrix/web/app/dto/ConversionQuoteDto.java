@@ -0,0 +1,36 @@
+package lendrix.web.app.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConversionQuoteDto {
+
+    private String quoteId;            // Pass as ConvertDto.quoteId to convert on these terms
+
+    private String fromCurrency;
+
+    private String toCurrency;
+
+    private BigDecimal amount;         // Debited from the source account, before the fee
+
+    private BigDecimal fee;
+
+    private BigDecimal receivedAmount; // Credited to the target account
+
+    private double rate;               // Units of toCurrency per unit of fromCurrency
+
+    private long rateVersion;
+
+    private Instant expiresAt;
+}
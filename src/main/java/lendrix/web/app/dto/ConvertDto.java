@@ -1,5 +1,6 @@
 package lendrix.web.app.dto;
 
+import java.math.BigDecimal;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -14,6 +15,7 @@ public class ConvertDto {
 
     private String fromCurrency;
     private String toCurrency;
-    private double amount;
+    private BigDecimal amount; // decimal on the wire, in units of fromCurrency
+    private String quoteId;    // optional: convert on the terms of a quote instead of live rates
 
 }
@@ -0,0 +1,27 @@
+package lendrix.web.app.dto;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CrossRateDto {
+
+    private String from;
+
+    private String to;
+
+    private double rate;         // Units of `to` per unit of `from`
+
+    private long version;        // Rate snapshot the rate was taken from
+
+    private Instant fetchedAt;
+}
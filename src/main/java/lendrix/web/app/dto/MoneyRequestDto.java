@@ -14,5 +14,6 @@ import lombok.Setter;
 public class MoneyRequestDto {
     private String recipientUsername;
     private BigDecimal amount;
+    private String currency; // defaults to USD
 
 }
@@ -0,0 +1,24 @@
+package lendrix.web.app.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpendingInsightsDto {
+
+    private LocalDate from;
+
+    private LocalDate to;                   // Inclusive
+
+    private List<SpendingRollupDto> totals; // Per currency and type over the whole range
+
+    private List<SpendingRollupDto> days;   // Per day, currency and type, oldest first; days without activity are left out
+}
@@ -0,0 +1,29 @@
+package lendrix.web.app.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import lendrix.web.app.enums.Type;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpendingRollupDto {
+
+    private LocalDate day;      // Null in the totals of the whole range
+
+    private String currency;
+
+    private Type type;
+
+    private long count;
+
+    private BigDecimal amount;
+
+    private BigDecimal fees;
+}
@@ -0,0 +1,22 @@
+package lendrix.web.app.dto;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPageDto {
+
+    private List<TransactionSummaryDto> items; // Newest first
+
+    private String nextCursor;                 // Pass back as `cursor` for the next page; null on the last page
+
+    private List<YearMonth> archivedMonths;    // Last page only: older history, read each month from /api/transactions/archive/{month}
+}
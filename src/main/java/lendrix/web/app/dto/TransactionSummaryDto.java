@@ -0,0 +1,44 @@
+package lendrix.web.app.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+Flat view of a transaction for history listings, read with a JPQL constructor
+expression so no owner/account/card entities are loaded.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionSummaryDto {
+
+    private String txid;
+
+    private BigDecimal amount;
+
+    private BigDecimal txFee;
+
+    private Type type;
+
+    private Status status;
+
+    private LocalDateTime createdAt;
+
+    private String accountId;
+
+    private String cardId;
+
+    private Long rateVersion;
+
+    private String description;
+
+    private String counterparty;
+}
@@ -20,6 +20,7 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -32,7 +33,7 @@ import lombok.Setter;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Account {
 
     @Id
@@ -54,6 +55,16 @@ public class Account {
 
     private char symbol;
 
+    //hot accounts take credits into sub-balance slots instead of this row, see AccountBalanceSlot
+    @Builder.Default
+    @Column(columnDefinition = "boolean not null default false")
+    private boolean hot = false;
+
+    @Version
+    @Column(columnDefinition = "bigint not null default 0")
+    @JsonIgnore
+    private long version;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
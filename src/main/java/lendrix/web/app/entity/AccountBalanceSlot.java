@@ -0,0 +1,47 @@
+package lendrix.web.app.entity;
+
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+One of the K sub-balances of a hot account. Credits land in a random slot so
+concurrent transfers into the account do not queue on a single row.
+ */
+@Entity
+@Table(name = "account_balance_slots",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "slotIndex"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccountBalanceSlot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String slotid;
+
+    @ManyToOne
+    @JoinColumn(name = "account_id", nullable = false)
+    @JsonIgnore
+    private Account account;
+
+    private int slotIndex;
+
+    private BigDecimal balance;
+}
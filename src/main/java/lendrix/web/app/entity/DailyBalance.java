@@ -0,0 +1,53 @@
+package lendrix.web.app.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+End-of-day balance of a ledger account, written in bulk by the nightly snapshot job.
+Only days with postings get a row; the balance on any other day is the one of the
+latest row before it.
+ */
+@Entity
+@Table(name = "daily_balances",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"ledgerAccount", "balanceDay"}),
+       indexes = @Index(name = "idx_daily_balances_day", columnList = "balanceDay"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyBalance {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String snapshotid;
+
+    @Column(nullable = false)
+    private String ledgerAccount;
+
+    @Column(nullable = false)
+    private LocalDate balanceDay;
+
+    @Column(length = 3)
+    private String currency;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal balance;
+
+    private long lastEntryId; //last ledger entry included in the balance
+}
@@ -0,0 +1,40 @@
+package lendrix.web.app.entity;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lendrix.web.app.enums.Status;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "idempotency_keys")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+    @Id
+    private String id; //user id, endpoint and client key
+
+    @Enumerated(EnumType.STRING)
+    private Status status; //PENDING while the first request runs, COMPLETED afterwards
+
+    private String transactionId;
+
+    private String requestHash; //SHA-256 of the endpoint and the request body
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
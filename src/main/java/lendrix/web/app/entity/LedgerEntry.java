@@ -0,0 +1,65 @@
+package lendrix.web.app.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lendrix.web.app.enums.EntrySide;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+One side of a double-entry posting. Rows are only ever inserted.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_entries", indexes = {
+    @Index(name = "idx_ledger_entries_account_entry", columnList = "ledgerAccount, entryId"),
+    @Index(name = "idx_ledger_entries_created", columnList = "createdAt")
+})
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerEntry {
+
+    //allocationSize 1 keeps ids in posting order per account (postings happen under the account lock),
+    //which is what lets a checkpoint split history at its lastEntryId
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entries_seq")
+    @SequenceGenerator(name = "ledger_entries_seq", sequenceName = "ledger_entries_seq", allocationSize = 1)
+    private Long entryId;
+
+    @Column(nullable = false)
+    private String journalId; //groups the debit and credit of one money movement
+
+    @Column(nullable = false)
+    private String ledgerAccount; //account id, "card:<id>" or a "system:" account
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EntrySide side;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
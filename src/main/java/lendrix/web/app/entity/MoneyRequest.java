@@ -1,5 +1,7 @@
 package lendrix.web.app.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -13,6 +15,8 @@ import lombok.*;
 @AllArgsConstructor
 @Builder
 public class MoneyRequest {
+    public static final String DEFAULT_CURRENCY = "USD";
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private String id;
@@ -27,7 +31,16 @@ public class MoneyRequest {
 
     private BigDecimal amount;
 
-    private String status; // PENDING, APPROVED, REJECTED
+    private String currency; // null on requests made before currencies were supported
+
+    private String status; // PENDING, SETTLING, APPROVED, REJECTED, FAILED
 
     private LocalDateTime createdAt;
+
+    private LocalDateTime settledAt;
+
+    @JsonIgnore
+    public String getCurrencyOrDefault() {
+        return currency == null ? DEFAULT_CURRENCY : currency;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,75 @@
+package lendrix.web.app.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lendrix.web.app.enums.TransferStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+A transfer accepted by the async endpoint and waiting for, or done by, a queue worker.
+ */
+@Entity
+@Table(name = "transfer_queue", indexes = {
+        @Index(name = "idx_transfer_queue_status_created", columnList = "status, createdAt"),
+        @Index(name = "idx_transfer_queue_owner_status", columnList = "owner_id, status")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QueuedTransfer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @ManyToOne
+    @JoinColumn(name = "owner_id", nullable = false)
+    @JsonIgnore
+    private User owner;
+
+    private String senderAccountCode;
+
+    private String recipientAccountNumber;
+
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TransferStatus status;
+
+    private String transactionId; //sender-side transaction once completed
+
+    private String error;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    private LocalDateTime claimedAt;
+
+    @JsonIgnore
+    private String claimToken; //set by the worker that claimed it; a requeue clears it so a slow worker cannot finish it
+
+    private LocalDateTime completedAt;
+}
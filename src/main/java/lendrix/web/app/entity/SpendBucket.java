@@ -0,0 +1,40 @@
+package lendrix.web.app.entity;
+
+import java.math.BigDecimal;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+Total a user has transferred out during one clock hour (bucketHour = hours since the epoch, UTC).
+Written with an upsert when a transfer commits; the transfer limits sum the last 24 or 168 rows.
+ */
+@Entity
+@Table(name = "spend_buckets",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"ownerUid", "bucketHour"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SpendBucket {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String bucketid;
+
+    private String ownerUid;
+
+    private long bucketHour;
+
+    private BigDecimal amount;
+}
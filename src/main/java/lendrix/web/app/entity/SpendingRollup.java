@@ -0,0 +1,61 @@
+package lendrix.web.app.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lendrix.web.app.enums.Type;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+Completed transactions of one user in one currency and of one type on one day: their
+count, amount and fees. Added to as transactions commit and recomputed by the rebuild
+job; the unique key starts with owner and day so it also serves the insights range reads.
+ */
+@Entity
+@Table(name = "spending_rollups",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"ownerUid", "rollupDay", "currency", "type"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SpendingRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String rollupid;
+
+    @Column(nullable = false)
+    private String ownerUid;
+
+    @Column(nullable = false)
+    private LocalDate rollupDay;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Type type;
+
+    private long txCount;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal fees;
+}
@@ -14,6 +14,7 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -26,7 +27,11 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+    //keyset pagination of history: WHERE owner/account ORDER BY createdAt DESC, txid DESC
+    @Index(name = "idx_transactions_owner_created_txid", columnList = "owner_id, createdAt, txid"),
+    @Index(name = "idx_transactions_account_created_txid", columnList = "account_id, createdAt, txid")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -57,6 +62,12 @@ public class Transaction {
     @Enumerated(EnumType.STRING)
     private Type type;
 
+    private Long rateVersion; //exchange rate snapshot used by a conversion
+
+    private String description;
+
+    private String counterparty; //account number (or "External") on the other side of the movement
+
     @ManyToOne
     @JoinColumn(name = "card_id")
     private Card card;
@@ -15,10 +15,12 @@ import org.springframework.security.core.userdetails.UserDetails;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.*;
+import lendrix.web.app.service.UserChangeListener;
 import lombok.*;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserChangeListener.class) //keeps the principal cache in step with role and password changes
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,6 @@
+package lendrix.web.app.enums;
+
+public enum EntrySide {
+    DEBIT,
+    CREDIT
+}
@@ -0,0 +1,7 @@
+package lendrix.web.app.enums;
+
+public enum NotificationChannel {
+    EMAIL,
+    SMS,
+    IN_APP
+}
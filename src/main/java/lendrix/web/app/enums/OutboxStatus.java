@@ -0,0 +1,7 @@
+package lendrix.web.app.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,8 @@
+package lendrix.web.app.enums;
+
+public enum TransferStatus {
+    QUEUED,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
@@ -9,12 +9,14 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lendrix.web.app.entity.User;
 import lendrix.web.app.service.JwtService;
+import lendrix.web.app.service.PrincipalCache;
 import lombok.RequiredArgsConstructor;
 
 @Component
@@ -23,6 +25,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(
@@ -40,15 +43,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         jwtToken = jwtToken.substring(7);
 
-        if (!jwtService.isTokenValid(jwtToken)) {
+        //one verification per request, skipped entirely for a recently verified token
+        Claims claims = jwtService.verify(jwtToken);
+        if (claims == null) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        String subject = jwtService.extractSubject(jwtToken);
-
-        
-        User user = (User) userDetailsService.loadUserByUsername(subject);
+        //a token seen recently skips the user query
+        User user = principalCache.get(claims.getSubject(), claims.getIssuedAt(), claims.getExpiration(),
+                subject -> (User) userDetailsService.loadUserByUsername(subject));
 
         if (user != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             var authToken = new UsernamePasswordAuthenticationToken(
@@ -0,0 +1,36 @@
+package lendrix.web.app.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.LockModeType;
+import lendrix.web.app.entity.AccountBalanceSlot;
+
+public interface AccountBalanceSlotRepository extends JpaRepository<AccountBalanceSlot, String> {
+
+    @Modifying
+    @Query("UPDATE AccountBalanceSlot s SET s.balance = s.balance + :amount WHERE s.account.accountid = :accountId AND s.slotIndex = :slotIndex")
+    int credit(@Param("accountId") String accountId, @Param("slotIndex") int slotIndex, @Param("amount") BigDecimal amount);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountBalanceSlot s WHERE s.account.accountid = :accountId AND s.slotIndex = :slotIndex")
+    Optional<AccountBalanceSlot> lockSlot(@Param("accountId") String accountId, @Param("slotIndex") int slotIndex);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountBalanceSlot s WHERE s.account.accountid = :accountId ORDER BY s.slotIndex")
+    List<AccountBalanceSlot> lockAllByAccountId(@Param("accountId") String accountId);
+
+    @Query("SELECT DISTINCT s.account.accountid FROM AccountBalanceSlot s WHERE s.balance <> 0")
+    List<String> findAccountIdsWithSlotBalance();
+
+    @Modifying
+    @Query("DELETE FROM AccountBalanceSlot s WHERE s.account.accountid = :accountId")
+    int deleteAllByAccountId(@Param("accountId") String accountId);
+}
@@ -1,10 +1,14 @@
 package lendrix.web.app.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import lendrix.web.app.entity.Account;
 
@@ -19,4 +23,28 @@ public interface AccountRepository extends JpaRepository<Account, String > {
     Optional<Account> findByCodeAndOwnerUid(String code, String uid); 
 
     Optional<Account> findByAccountNumber(long recipientAccountNumber); 
+
+    List<Account> findAllByAccountNumberIn(Collection<Long> accountNumbers);
+
+    List<Account> findAllByOwnerUidIn(Collection<String> uids);
+
+    /**
+    The last account id of every run of chunkSize accounts in id order, plus the very last id,
+    in one pass over the primary key. Consecutive values bound the statement chunks.
+     */
+    @Query(nativeQuery = true, value = """
+            SELECT accountid FROM (
+                SELECT accountid, row_number() OVER (ORDER BY accountid) AS n, count(*) OVER () AS total
+                FROM accounts) a
+            WHERE n % :chunkSize = 0 OR n = total
+            ORDER BY accountid""")
+    List<String> findChunkBoundaries(@Param("chunkSize") int chunkSize);
+
+    //accountid, accountNumber, code, owner uid of the accounts in (afterId, lastId] that existed before createdBefore
+    @Query("""
+            SELECT a.accountid, a.accountNumber, a.code, o.uid FROM Account a LEFT JOIN a.owner o
+            WHERE a.accountid > :afterId AND a.accountid <= :lastId AND a.createdAt < :createdBefore
+            ORDER BY a.accountid""")
+    List<Object[]> findStatementAccounts(@Param("afterId") String afterId, @Param("lastId") String lastId,
+                                         @Param("createdBefore") LocalDateTime createdBefore);
 }
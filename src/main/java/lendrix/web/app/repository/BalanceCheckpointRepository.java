@@ -0,0 +1,13 @@
+package lendrix.web.app.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import lendrix.web.app.entity.BalanceCheckpoint;
+
+public interface BalanceCheckpointRepository extends JpaRepository<BalanceCheckpoint, String> {
+
+    //the per-currency checkpoints of a system account, "system:fx/USD" and so on
+    List<BalanceCheckpoint> findByLedgerAccountStartingWith(String prefix);
+}
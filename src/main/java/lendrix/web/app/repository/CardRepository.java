@@ -3,7 +3,11 @@ package lendrix.web.app.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.LockModeType;
 import lendrix.web.app.entity.Card;
 
 public interface CardRepository extends JpaRepository<Card, String>{
@@ -12,5 +16,10 @@ public interface CardRepository extends JpaRepository<Card, String>{
 
     boolean existsByCardNumber(String cardNumber);
 
+    //row lock plus a version bump, so optimistic writers that read the card earlier retry
+    @Lock(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
+    @Query("SELECT c FROM Card c WHERE c.cardid = :cardid")
+    Optional<Card> lockById(@Param("cardid") String cardid);
+
 
 }
@@ -0,0 +1,51 @@
+package lendrix.web.app.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import lendrix.web.app.entity.DailyBalance;
+
+public interface DailyBalanceRepository extends JpaRepository<DailyBalance, String> {
+
+    /**
+    One statement for the whole day: every ledger account posted to between dayStart and
+    nextDayStart gets its previous end-of-day balance (one index seek each) plus the day's net movement.
+    Days must be snapshotted in order. Re-running a day is a no-op.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO daily_balances (snapshotid, ledger_account, balance_day, currency, balance, last_entry_id)
+            SELECT gen_random_uuid()::text, e.ledger_account, :day, e.currency, COALESCE(p.balance, 0) + e.delta, e.last_entry_id
+            FROM (SELECT ledger_account, MIN(currency) AS currency, MAX(entry_id) AS last_entry_id,
+                         SUM(CASE WHEN side = 'CREDIT' THEN amount ELSE -amount END) AS delta
+                  FROM ledger_entries
+                  WHERE created_at >= :dayStart AND created_at < :nextDayStart
+                  GROUP BY ledger_account) e
+            LEFT JOIN LATERAL (SELECT d.balance FROM daily_balances d
+                               WHERE d.ledger_account = e.ledger_account AND d.balance_day < :day
+                               ORDER BY d.balance_day DESC LIMIT 1) p ON true
+            ON CONFLICT (ledger_account, balance_day) DO NOTHING""")
+    int snapshotDay(@Param("day") LocalDate day, @Param("dayStart") LocalDateTime dayStart,
+                    @Param("nextDayStart") LocalDateTime nextDayStart);
+
+    @Query("SELECT MAX(d.balanceDay) FROM DailyBalance d")
+    Optional<LocalDate> findLastSnapshotDay();
+
+    //ledger account and balance of the last snapshot before day of every ledger account in (afterAccount, lastAccount]
+    @Query(nativeQuery = true, value = """
+            SELECT DISTINCT ON (ledger_account) ledger_account, balance
+            FROM daily_balances
+            WHERE ledger_account > :afterAccount AND ledger_account <= :lastAccount AND balance_day < :day
+            ORDER BY ledger_account, balance_day DESC""")
+    List<Object[]> findBalancesBefore(@Param("afterAccount") String afterAccount, @Param("lastAccount") String lastAccount,
+                                      @Param("day") LocalDate day);
+
+    Optional<DailyBalance> findFirstByLedgerAccountAndBalanceDayLessThanOrderByBalanceDayDesc(String ledgerAccount, LocalDate day);
+}
@@ -0,0 +1,34 @@
+package lendrix.web.app.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import lendrix.web.app.entity.IdempotencyRecord;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    //Returns 1 when this caller owns the key, 0 when it was already taken
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (id, status, request_hash, created_at) VALUES (:id, 'PENDING', :requestHash, now()) " +
+                   "ON CONFLICT (id) DO NOTHING",
+           nativeQuery = true)
+    int claim(@Param("id") String id, @Param("requestHash") String requestHash);
+
+    //Returns 1 when the key had expired and now belongs to this caller; created_at and the ttl are both database time
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE idempotency_keys SET status = 'PENDING', transaction_id = NULL, request_hash = :requestHash, created_at = now() " +
+                   "WHERE id = :id AND created_at < now() - :ttlSeconds * interval '1 second'",
+           nativeQuery = true)
+    int takeOverExpired(@Param("id") String id, @Param("requestHash") String requestHash, @Param("ttlSeconds") long ttlSeconds);
+
+    //Joins the caller's transaction, so the key completes with the money movement
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = lendrix.web.app.enums.Status.COMPLETED, r.transactionId = :transactionId WHERE r.id = :id")
+    int complete(@Param("id") String id, @Param("transactionId") String transactionId);
+}
@@ -0,0 +1,56 @@
+package lendrix.web.app.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import lendrix.web.app.entity.LedgerEntry;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    @Query("SELECT COALESCE(SUM(CASE WHEN e.side = lendrix.web.app.enums.EntrySide.CREDIT THEN e.amount ELSE -e.amount END), 0) " +
+           "FROM LedgerEntry e WHERE e.ledgerAccount = :ledgerAccount AND e.entryId > :afterEntryId")
+    BigDecimal sumPostedAfter(@Param("ledgerAccount") String ledgerAccount, @Param("afterEntryId") long afterEntryId);
+
+    //Net amount posted to each ledger account after its checkpoint (or ever, without one); accounts with no such entries are left out
+    @Query("SELECT e.ledgerAccount, SUM(CASE WHEN e.side = lendrix.web.app.enums.EntrySide.CREDIT THEN e.amount ELSE -e.amount END) " +
+           "FROM LedgerEntry e LEFT JOIN BalanceCheckpoint c ON c.ledgerAccount = e.ledgerAccount " +
+           "WHERE e.ledgerAccount IN :ledgerAccounts AND e.entryId > COALESCE(c.lastEntryId, 0) GROUP BY e.ledgerAccount")
+    List<Object[]> sumPostedAfterCheckpoints(@Param("ledgerAccounts") Collection<String> ledgerAccounts);
+
+    @Query("SELECT COALESCE(MAX(e.entryId), 0) FROM LedgerEntry e WHERE e.ledgerAccount = :ledgerAccount")
+    long findLastEntryId(@Param("ledgerAccount") String ledgerAccount);
+
+    @Query("SELECT COALESCE(MAX(e.entryId), 0) FROM LedgerEntry e")
+    long findLastEntryId();
+
+    @Query("SELECT COALESCE(SUM(CASE WHEN e.side = lendrix.web.app.enums.EntrySide.CREDIT THEN e.amount ELSE -e.amount END), 0) " +
+           "FROM LedgerEntry e WHERE e.ledgerAccount = :ledgerAccount AND e.currency = :currency AND e.entryId > :afterEntryId")
+    BigDecimal sumPostedAfterInCurrency(@Param("ledgerAccount") String ledgerAccount, @Param("currency") String currency,
+                                        @Param("afterEntryId") long afterEntryId);
+
+    //Net amount per currency of the entries in (afterEntryId, upToEntryId], for the multi-currency system accounts
+    @Query("SELECT e.currency, SUM(CASE WHEN e.side = lendrix.web.app.enums.EntrySide.CREDIT THEN e.amount ELSE -e.amount END) " +
+           "FROM LedgerEntry e WHERE e.ledgerAccount = :ledgerAccount AND e.entryId > :afterEntryId AND e.entryId <= :upToEntryId " +
+           "GROUP BY e.currency")
+    List<Object[]> sumPostedBetweenByCurrency(@Param("ledgerAccount") String ledgerAccount, @Param("afterEntryId") long afterEntryId,
+                                              @Param("upToEntryId") long upToEntryId);
+
+    @Query("SELECT DISTINCT e.ledgerAccount FROM LedgerEntry e WHERE e.createdAt >= :since")
+    List<String> findLedgerAccountsPostedSince(@Param("since") LocalDateTime since);
+
+    //Walks the (ledgerAccount, entryId) index from afterEntryId, so the cost is bounded by the entries after it
+    @Query("SELECT COALESCE(SUM(CASE WHEN e.side = lendrix.web.app.enums.EntrySide.CREDIT THEN e.amount ELSE -e.amount END), 0) " +
+           "FROM LedgerEntry e WHERE e.ledgerAccount = :ledgerAccount AND e.entryId > :afterEntryId AND e.createdAt <= :at")
+    BigDecimal sumPostedAfterUntil(@Param("ledgerAccount") String ledgerAccount, @Param("afterEntryId") long afterEntryId,
+                                   @Param("at") LocalDateTime at);
+
+    @Query("SELECT MIN(e.createdAt) FROM LedgerEntry e")
+    Optional<LocalDateTime> findFirstPostingTime();
+}
@@ -1,10 +1,23 @@
 package lendrix.web.app.repository;
 
 import lendrix.web.app.entity.MoneyRequest;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
 import java.util.List;
 
 public interface MoneyRequestRepository extends JpaRepository<MoneyRequest, String> {
     List<MoneyRequest> findByRecipient_Username(String username);
     List<MoneyRequest> findByRequester_Username(String username);
+
+    //FOR UPDATE SKIP LOCKED: a request is only ever picked up by one settlement run
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<MoneyRequest> findByStatusOrderByCreatedAt(String status, Limit limit);
 } 
\ No newline at end of file
@@ -0,0 +1,25 @@
+package lendrix.web.app.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import lendrix.web.app.entity.OutboxNotification;
+import lendrix.web.app.enums.OutboxStatus;
+
+public interface OutboxNotificationRepository extends JpaRepository<OutboxNotification, String> {
+
+    //FOR UPDATE SKIP LOCKED: several relay instances can drain the outbox side by side
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<OutboxNotification> findByStatusAndNextAttemptAtLessThanEqualOrderByCreatedAt(
+            OutboxStatus status, LocalDateTime now, Limit limit);
+
+    long countByStatus(OutboxStatus status);
+}
@@ -0,0 +1,49 @@
+package lendrix.web.app.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import lendrix.web.app.entity.QueuedTransfer;
+import lendrix.web.app.enums.TransferStatus;
+
+public interface QueuedTransferRepository extends JpaRepository<QueuedTransfer, String> {
+
+    //FOR UPDATE SKIP LOCKED: concurrent workers each get a different slice of the queue
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<QueuedTransfer> findByStatusOrderByCreatedAt(TransferStatus status, Limit limit);
+
+    //the worker's claim check: the row stays locked until the transfer commits
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT q FROM QueuedTransfer q WHERE q.id = :id")
+    Optional<QueuedTransfer> findByIdForUpdate(@Param("id") String id);
+
+    Optional<QueuedTransfer> findByIdAndOwnerUid(String id, String uid);
+
+    long countByStatus(TransferStatus status);
+
+    //amount per sender currency of the user's transfers still waiting for a worker
+    @Query("SELECT q.senderAccountCode, SUM(q.amount) FROM QueuedTransfer q WHERE q.owner.uid = :uid " +
+           "AND q.status IN (lendrix.web.app.enums.TransferStatus.QUEUED, lendrix.web.app.enums.TransferStatus.PROCESSING) " +
+           "GROUP BY q.senderAccountCode")
+    List<Object[]> sumPendingByCurrency(@Param("uid") String uid);
+
+    @Query("SELECT MIN(q.createdAt) FROM QueuedTransfer q WHERE q.status = :status")
+    LocalDateTime findOldestCreatedAt(@Param("status") TransferStatus status);
+
+    @Modifying
+    @Query("UPDATE QueuedTransfer q SET q.status = lendrix.web.app.enums.TransferStatus.QUEUED, q.claimedAt = null, q.claimToken = null " +
+           "WHERE q.status = lendrix.web.app.enums.TransferStatus.PROCESSING AND q.claimedAt < :before")
+    int requeueStuck(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,31 @@
+package lendrix.web.app.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import lendrix.web.app.entity.SpendBucket;
+
+public interface SpendBucketRepository extends JpaRepository<SpendBucket, String> {
+
+    //Adds to the hour's bucket and returns its new total; the row stays locked until the transfer commits
+    @Query(nativeQuery = true, value = """
+            INSERT INTO spend_buckets (bucketid, owner_uid, bucket_hour, amount)
+            VALUES (:bucketid, :ownerUid, :bucketHour, :amount)
+            ON CONFLICT (owner_uid, bucket_hour) DO UPDATE SET amount = spend_buckets.amount + EXCLUDED.amount
+            RETURNING amount""")
+    BigDecimal add(@Param("bucketid") String bucketid, @Param("ownerUid") String ownerUid,
+                   @Param("bucketHour") long bucketHour, @Param("amount") BigDecimal amount);
+
+    List<SpendBucket> findByOwnerUidAndBucketHourGreaterThanEqual(String ownerUid, long bucketHour);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SpendBucket b WHERE b.bucketHour < :bucketHour")
+    int deleteOlderThan(@Param("bucketHour") long bucketHour);
+}
@@ -0,0 +1,61 @@
+package lendrix.web.app.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import lendrix.web.app.entity.SpendingRollup;
+
+public interface SpendingRollupRepository extends JpaRepository<SpendingRollup, String> {
+
+    //Adds to the day's rollup; the row stays locked until the surrounding transaction commits
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO spending_rollups (rollupid, owner_uid, rollup_day, currency, type, tx_count, amount, fees)
+            VALUES (gen_random_uuid()::text, :ownerUid, :day, :currency, :type, :count, :amount, :fees)
+            ON CONFLICT (owner_uid, rollup_day, currency, type) DO UPDATE SET
+                tx_count = spending_rollups.tx_count + EXCLUDED.tx_count,
+                amount = spending_rollups.amount + EXCLUDED.amount,
+                fees = spending_rollups.fees + EXCLUDED.fees""")
+    int add(@Param("ownerUid") String ownerUid, @Param("day") LocalDate day, @Param("currency") String currency,
+            @Param("type") String type, @Param("count") long count, @Param("amount") BigDecimal amount,
+            @Param("fees") BigDecimal fees);
+
+    @Modifying
+    @Query("DELETE FROM SpendingRollup r WHERE r.rollupDay = :day")
+    int deleteDay(@Param("day") LocalDate day);
+
+    /**
+    Recomputes every rollup of a day from the completed transactions (status 1 is the
+    COMPLETED ordinal) in one statement; call after deleteDay in the same transaction.
+    Each transaction counts for the owner of its account or card.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO spending_rollups (rollupid, owner_uid, rollup_day, currency, type, tx_count, amount, fees)
+            SELECT gen_random_uuid()::text, COALESCE(a.owner_id, c.owner_id, t.owner_id), :day, COALESCE(a.code, c.currency), t.type,
+                   COUNT(*), COALESCE(SUM(t.amount), 0), COALESCE(SUM(t.tx_fee), 0)
+            FROM transactions t
+            LEFT JOIN accounts a ON a.accountid = t.account_id
+            LEFT JOIN cards c ON c.cardid = t.card_id
+            WHERE t.created_at >= :dayStart AND t.created_at < :nextDayStart AND t.status = 1
+              AND COALESCE(a.owner_id, c.owner_id, t.owner_id) IS NOT NULL AND t.type IS NOT NULL
+              AND COALESCE(a.code, c.currency) IS NOT NULL
+            GROUP BY COALESCE(a.owner_id, c.owner_id, t.owner_id), COALESCE(a.code, c.currency), t.type
+            ON CONFLICT (owner_uid, rollup_day, currency, type) DO UPDATE SET
+                tx_count = EXCLUDED.tx_count, amount = EXCLUDED.amount, fees = EXCLUDED.fees""")
+    int rebuildDay(@Param("day") LocalDate day, @Param("dayStart") LocalDateTime dayStart,
+                   @Param("nextDayStart") LocalDateTime nextDayStart);
+
+    List<SpendingRollup> findByOwnerUidAndRollupDayBetweenOrderByRollupDay(String ownerUid, LocalDate from, LocalDate to);
+
+    @Query("SELECT MIN(r.rollupDay) FROM SpendingRollup r")
+    Optional<LocalDate> findFirstRollupDay();
+}
@@ -1,17 +1,15 @@
 package lendrix.web.app.repository;
 
-import org.springframework.data.jpa.repository.JpaRepository;
-import lendrix.web.app.entity.Transaction;
-import java.util.List;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 
-public interface TransactionRepository extends JpaRepository<Transaction, String> {
-    List<Transaction> findBySenderOrReceiver(String sender, String receiver);
-    List<Transaction> findByOwner_Username(String username);
+import lendrix.web.app.entity.Transaction;
+
+public interface TransactionRepository extends JpaRepository<Transaction, String>, TransactionRepositoryCustom {
 
-    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t WHERE t.sender = :username AND t.createdAt >= :since")
-    BigDecimal sumSentAmountSince(@Param("username") String username, @Param("since") LocalDateTime since);
+    @Query("SELECT MIN(t.createdAt) FROM Transaction t WHERE t.status = lendrix.web.app.enums.Status.COMPLETED")
+    Optional<LocalDateTime> findFirstCompletedAt();
 }
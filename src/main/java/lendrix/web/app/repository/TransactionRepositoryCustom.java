@@ -0,0 +1,39 @@
+package lendrix.web.app.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import lendrix.web.app.dto.TransactionSummaryDto;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+
+public interface TransactionRepositoryCustom {
+
+    /**
+    One page of an owner's transactions, newest first, strictly after the keyset
+    position (afterCreatedAt, afterTxid) when given. Null filters are left out of the query.
+     */
+    List<TransactionSummaryDto> findSummaries(String ownerUid, Type type, Status status, String accountId,
+                                              LocalDateTime afterCreatedAt, String afterTxid, int limit);
+
+    /**
+    All of an owner's transactions, oldest first, read through a server-side cursor
+    fetchSize rows at a time. Must be consumed and closed inside a transaction.
+     */
+    Stream<TransactionSummaryDto> streamSummaries(String ownerUid, int fetchSize);
+
+    /**
+    Transactions created in [from, to) of the accounts with ids in (afterAccountId, lastAccountId],
+    ordered by account id (database collation) and then oldest first, read through a server-side
+    cursor fetchSize rows at a time. Must be consumed and closed inside a transaction.
+     */
+    Stream<TransactionSummaryDto> streamAccountSummaries(String afterAccountId, String lastAccountId,
+                                                         LocalDateTime from, LocalDateTime to, int fetchSize);
+
+    /**
+    An owner's transactions whose description or counterparty match a Postgres tsquery
+    (simple configuration), newest first.
+     */
+    List<TransactionSummaryDto> searchSummaries(String ownerUid, String tsQuery, int limit);
+}
@@ -0,0 +1,131 @@
+package lendrix.web.app.repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import lendrix.web.app.dto.TransactionSummaryDto;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+
+//Built per call so each filter combination gets its own plan on the matching index
+public class TransactionRepositoryImpl implements TransactionRepositoryCustom {
+
+    private static final String SUMMARY_SELECT = """
+            SELECT new lendrix.web.app.dto.TransactionSummaryDto(
+                t.txid, t.amount, t.txFee, t.type, t.status, t.createdAt,
+                a.accountid, c.cardid, t.rateVersion, t.description, t.counterparty)
+            FROM Transaction t
+            LEFT JOIN t.account a
+            LEFT JOIN t.card c""";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TransactionSummaryDto> findSummaries(String ownerUid, Type type, Status status, String accountId,
+                                                     LocalDateTime afterCreatedAt, String afterTxid, int limit) {
+        StringBuilder jpql = new StringBuilder(SUMMARY_SELECT + " WHERE t.owner.uid = :ownerUid");
+        if (type != null) {
+            jpql.append(" AND t.type = :type");
+        }
+        if (status != null) {
+            jpql.append(" AND t.status = :status");
+        }
+        if (accountId != null) {
+            jpql.append(" AND a.accountid = :accountId");
+        }
+        if (afterCreatedAt != null) {
+            //the first condition bounds the index range scan, the second breaks ties on txid
+            jpql.append(" AND t.createdAt <= :afterCreatedAt AND (t.createdAt < :afterCreatedAt OR t.txid < :afterTxid)");
+        }
+        jpql.append(" ORDER BY t.createdAt DESC, t.txid DESC");
+
+        TypedQuery<TransactionSummaryDto> query = entityManager.createQuery(jpql.toString(), TransactionSummaryDto.class)
+                .setParameter("ownerUid", ownerUid)
+                .setMaxResults(limit);
+        if (type != null) {
+            query.setParameter("type", type);
+        }
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+        if (accountId != null) {
+            query.setParameter("accountId", accountId);
+        }
+        if (afterCreatedAt != null) {
+            query.setParameter("afterCreatedAt", afterCreatedAt);
+            query.setParameter("afterTxid", afterTxid);
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public Stream<TransactionSummaryDto> streamSummaries(String ownerUid, int fetchSize) {
+        //projections are not managed entities, so the persistence context stays empty while streaming
+        return entityManager.createQuery(SUMMARY_SELECT + " WHERE t.owner.uid = :ownerUid ORDER BY t.createdAt, t.txid",
+                        TransactionSummaryDto.class)
+                .setParameter("ownerUid", ownerUid)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public Stream<TransactionSummaryDto> streamAccountSummaries(String afterAccountId, String lastAccountId,
+                                                                LocalDateTime from, LocalDateTime to, int fetchSize) {
+        //an index range scan on (account_id, created_at, txid) in the month's partition only
+        return entityManager.createQuery(SUMMARY_SELECT
+                        + " WHERE a.accountid > :afterAccountId AND a.accountid <= :lastAccountId"
+                        + " AND t.createdAt >= :from AND t.createdAt < :to"
+                        + " ORDER BY a.accountid, t.createdAt, t.txid", TransactionSummaryDto.class)
+                .setParameter("afterAccountId", afterAccountId)
+                .setParameter("lastAccountId", lastAccountId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public List<TransactionSummaryDto> searchSummaries(String ownerUid, String tsQuery, int limit) {
+        //search_vector and its GIN index come from the V2 migration; @@ has no JPQL form
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery("""
+                        SELECT t.txid, t.amount, t.tx_fee, t.type, t.status, t.created_at,
+                               t.account_id, t.card_id, t.rate_version, t.description, t.counterparty
+                        FROM transactions t
+                        WHERE t.owner_id = :ownerUid AND t.search_vector @@ to_tsquery('simple', :query)
+                        ORDER BY t.created_at DESC, t.txid DESC
+                        LIMIT :limit""")
+                .setParameter("ownerUid", ownerUid)
+                .setParameter("query", tsQuery)
+                .setParameter("limit", limit)
+                .getResultList();
+        List<TransactionSummaryDto> items = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            items.add(new TransactionSummaryDto(
+                    (String) row[0],
+                    (BigDecimal) row[1],
+                    (BigDecimal) row[2],
+                    row[3] == null ? null : Type.valueOf((String) row[3]),
+                    row[4] == null ? null : Status.values()[((Number) row[4]).intValue()], //ordinal column
+                    row[5] instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) row[5],
+                    (String) row[6],
+                    (String) row[7],
+                    row[8] == null ? null : ((Number) row[8]).longValue(),
+                    (String) row[9],
+                    (String) row[10]));
+        }
+        return items;
+    }
+}
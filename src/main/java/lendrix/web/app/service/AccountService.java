@@ -1,14 +1,28 @@
 package lendrix.web.app.service;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import lendrix.web.app.dto.AccountDto;
+import lendrix.web.app.dto.BalanceAtDto;
+import lendrix.web.app.dto.BatchTransferDto;
+import lendrix.web.app.dto.BatchTransferResultDto;
+import lendrix.web.app.dto.ConversionQuoteDto;
 import lendrix.web.app.dto.ConvertDto;
+import lendrix.web.app.dto.CrossRateDto;
 import lendrix.web.app.dto.DepositDto;
 import lendrix.web.app.dto.TransferDto;
 import lendrix.web.app.entity.Account;
@@ -18,7 +32,11 @@ import lendrix.web.app.enums.Status;
 import lendrix.web.app.enums.Type;
 import lendrix.web.app.repository.AccountRepository;
 import lendrix.web.app.repository.TransactionRepository;
+import lendrix.web.app.service.LedgerService.Journal;
 import lendrix.web.app.service.helper.AccountHelper;
+import lendrix.web.app.service.helper.AccountLockManager;
+import lendrix.web.app.service.helper.HotAccountHelper;
+import lendrix.web.app.util.Money;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -30,7 +48,17 @@ public class AccountService {
     private final AccountRepository accountRepository;
     private final AccountHelper accountHelper;
     private final ExchangeRateService exchangeRateService;
+    private final ExchangeRateHistoryStore exchangeRateHistoryStore;
+    private final ConversionQuoteService conversionQuoteService;
     private final TransactionRepository transactionRepository;
+    private final AccountLockManager accountLockManager;
+    private final LedgerService ledgerService;
+    private final HotAccountHelper hotAccountHelper;
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final SpendingRollupService spendingRollupService;
+
+    @Value("${transfers.batch.max-size:1000}")
+    private int maxBatchSize;
 
     /**
     Create a new account for a user
@@ -48,7 +76,22 @@ public class AccountService {
      */
     public List<Account> getUserAccounts(String uid) {
         log.info("Fetching accounts for user: {}", uid);
-        return accountRepository.findAllByOwnerUid(uid);
+        // Balances come from the ledger, hot-account slot credits included; copies, never written back
+        List<Account> accounts = accountRepository.findAllByOwnerUid(uid);
+        Map<String, BigDecimal> balances = ledgerService.balancesOf(accounts.stream().map(LedgerService::ledgerAccount).toList());
+        return accounts.stream()
+                .map(account -> account.toBuilder().balance(balances.get(LedgerService.ledgerAccount(account))).build())
+                .toList();
+    }
+
+    /**
+    Turn hot-account mode on or off for one of the user's accounts.
+    Meant for accounts that receive many concurrent transfers (merchants, payroll pools).
+     */
+    public Account setHotMode(String code, boolean enabled, User user) {
+        Account account = accountRepository.findByCodeAndOwnerUid(code, user.getUid())
+                .orElseThrow(() -> new IllegalArgumentException("Account not found for code: " + code));
+        return hotAccountHelper.setHotMode(account, enabled);
     }
 
     /**
@@ -79,6 +122,116 @@ public class AccountService {
         return accountHelper.performTransfer(senderAccount, receiverAccount, transferDto.getAmount(), user);
     }
 
+    /**
+    Transfer funds to many recipients at once (payroll, payouts).
+    All accounts are loaded with two queries and locked together, and the balance
+    updates and transaction rows go out as JDBC batches in one database transaction.
+    Every item gets its own result; a failed item does not stop the others.
+     */
+    public List<BatchTransferResultDto> transferFundsBatch(BatchTransferDto batchTransferDto, User user) {
+        List<TransferDto> transfers = batchTransferDto.getTransfers();
+        if (transfers == null || transfers.isEmpty()) {
+            throw new IllegalArgumentException("At least one transfer is required");
+        }
+        if (transfers.size() > maxBatchSize) {
+            throw new IllegalArgumentException("A batch can contain at most " + maxBatchSize + " transfers");
+        }
+
+        long startedAt = System.nanoTime();
+
+        // Load every account involved up front: the user's own accounts and all recipients
+        Map<String, Account> senderAccounts = accountRepository.findAllByOwnerUid(user.getUid()).stream()
+                .collect(Collectors.toMap(Account::getCode, Function.identity()));
+
+        Set<Long> recipientNumbers = new HashSet<>();
+        for (TransferDto transfer : transfers) {
+            Long number = parseAccountNumber(transfer.getRecipientAccountNumber());
+            if (number != null) {
+                recipientNumbers.add(number);
+            }
+        }
+        Map<Long, Account> recipientAccounts = accountRepository.findAllByAccountNumberIn(recipientNumbers).stream()
+                .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+
+        // Validate all items before taking any lock
+        BatchTransferResultDto[] results = new BatchTransferResultDto[transfers.size()];
+        List<Integer> valid = new ArrayList<>();
+        Map<String, Account> involved = new HashMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferDto transfer = transfers.get(i);
+            Account sender = senderAccounts.get(transfer.getSenderAccountCode());
+            Long recipientNumber = parseAccountNumber(transfer.getRecipientAccountNumber());
+            Account receiver = recipientNumber == null ? null : recipientAccounts.get(recipientNumber);
+
+            String error = null;
+            if (transfer.getAmount() == null || transfer.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+                error = "Amount must be greater than zero";
+            } else if (sender == null) {
+                error = "Sender account not found";
+            } else if (recipientNumber == null) {
+                error = "Recipient account number must be numeric";
+            } else if (receiver == null) {
+                error = "Receiver account not found";
+            }
+
+            if (error != null) {
+                results[i] = failedResult(i, error);
+            } else {
+                valid.add(i);
+                for (Account account : accountHelper.accountsToLock(sender, receiver)) {
+                    involved.putIfAbsent(account.getAccountid(), account);
+                }
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            accountLockManager.withLockedAccounts(involved.values(), locked -> {
+                for (int i : valid) {
+                    TransferDto transfer = transfers.get(i);
+                    Account sender = locked.get(senderAccounts.get(transfer.getSenderAccountCode()).getAccountid());
+                    Account recipient = recipientAccounts.get(parseAccountNumber(transfer.getRecipientAccountNumber()));
+                    Account receiver = locked.getOrDefault(recipient.getAccountid(), recipient);
+                    try {
+                        Transaction transaction = accountHelper.applyTransfer(sender, receiver, transfer.getAmount(), user);
+                        results[i] = BatchTransferResultDto.builder()
+                                .index(i)
+                                .status(Status.COMPLETED)
+                                .transactionId(transaction.getTxid())
+                                .build();
+                    } catch (IllegalArgumentException | IllegalStateException e) {
+                        // applyTransfer rejects before touching any balance, so the batch can go on;
+                        // IllegalStateException: a receiver read as hot has left hot mode since
+                        results[i] = failedResult(i, e.getMessage());
+                    }
+                }
+                return null;
+            });
+        }
+
+        double seconds = Math.max(System.nanoTime() - startedAt, 1) / 1_000_000_000.0;
+        log.info("Batch of {} transfers ({} valid) for user {} took {} ms, {} transfers/s",
+                transfers.size(), valid.size(), user.getUsername(),
+                Math.round(seconds * 1000), Math.round(transfers.size() / seconds));
+
+        return List.of(results);
+    }
+
+    private Long parseAccountNumber(String accountNumber) {
+        try {
+            return Long.parseLong(accountNumber);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private BatchTransferResultDto failedResult(int index, String error) {
+        return BatchTransferResultDto.builder()
+                .index(index)
+                .status(Status.FAILED)
+                .error(error)
+                .build();
+    }
+
     /**
     Get exchange rates (for currency conversion)
      */
@@ -87,19 +240,78 @@ public class AccountService {
         return exchangeRateService.getRates();
     }
 
+    /**
+    Cross rate between two currencies, read from the current snapshot's rate matrix
+     */
+    public CrossRateDto getCrossRate(String from, String to) {
+        ExchangeRateService.RateSnapshot snapshot = exchangeRateService.getSnapshot();
+        return CrossRateDto.builder()
+                .from(from)
+                .to(to)
+                .rate(snapshot.crossRate(from, to))
+                .version(snapshot.version())
+                .fetchedAt(snapshot.fetchedAt())
+                .build();
+    }
+
+    /**
+    Historical rate (units per USD) in effect at the given instant
+     */
+    public Optional<ExchangeRateHistoryStore.RatePoint> getRateAt(String currency, Instant at) {
+        return exchangeRateHistoryStore.rateAt(currency, at);
+    }
+
+    /**
+    Historical rates (units per USD) between two instants, for charting
+     */
+    public List<ExchangeRateHistoryStore.RatePoint> getRateHistory(String currency, Instant from, Instant to, int maxPoints) {
+        return exchangeRateHistoryStore.range(currency, from, to, maxPoints);
+    }
+
     /**
     Convert currency between two user-owned accounts
      */
     public Transaction convertCurrency(ConvertDto convertDto, User user) throws Exception {
+        if (convertDto.getQuoteId() != null) {
+            log.info("Converting on quote {} for user {}", convertDto.getQuoteId(), user.getUsername());
+            return accountHelper.convertCurrency(conversionQuoteService.redeem(convertDto.getQuoteId(), user), user);
+        }
         log.info("Converting {} from {} to {} for user {}",
                 convertDto.getAmount(), convertDto.getFromCurrency(), convertDto.getToCurrency(), user.getUsername());
         return accountHelper.convertCurrency(convertDto, user);
     }
 
+    /**
+    Quote a conversion: the rate, fee and received amount are held for a short time
+     */
+    public ConversionQuoteDto quoteConversion(ConvertDto convertDto, User user) throws Exception {
+        return conversionQuoteService.quote(convertDto, user);
+    }
+
+    /**
+    Balance of one of the user's accounts at a past moment, for disputes and statements.
+     */
+    public BalanceAtDto getBalanceAt(String accountId, LocalDateTime at, User user) {
+        if (at.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Balance date must not be in the future");
+        }
+        Account account = accountRepository.findById(accountId)
+                .filter(a -> a.getOwner().getUid().equals(user.getUid()))
+                .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        BalanceSnapshotService.BalanceAt balance = balanceSnapshotService.balanceAt(LedgerService.ledgerAccount(account), at);
+        return BalanceAtDto.builder()
+                .accountId(account.getAccountid())
+                .code(account.getCode())
+                .at(at)
+                .balance(balance.balance())
+                .snapshotDay(balance.snapshotDay())
+                .build();
+    }
+
+
     /**
     Deposit money into a user's account (manual, will later connect to Stripe)
      */
-    @Transactional
     public Transaction deposit(DepositDto depositDto, User user) {
         // Find the account by currency code and user
         Account account = accountRepository
@@ -111,26 +323,37 @@ public class AccountService {
         if (depositDto.getAmount() == null || depositDto.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Deposit amount must be greater than zero");
         }
+        Money amount = accountHelper.toMoney(depositDto.getAmount(), account.getCode());
 
-        // Update the account balance
-        BigDecimal newBalance = account.getBalance().add(depositDto.getAmount());
-        account.setBalance(newBalance);
-        accountRepository.save(account);
-
-        log.info("Deposited {} into {} account for user {}", depositDto.getAmount(), account.getCode(), user.getUsername());
-
-        // Create and save a transaction record for the deposit
-        Transaction transaction = Transaction.builder()
-                .type(Type.DEPOSIT)
-                .amount(depositDto.getAmount())
-                .txFee(BigDecimal.ZERO)   //No fee for deposit
-                .sender("External")       //Placeholder (Stripe later)
-                .receiver(account.getCode())
-                .owner(user)
-                .status(Status.COMPLETED)
-                .account(account)
-                .build();
+        return accountLockManager.withLockedAccounts(List.of(account), locked -> {
+            Account target = locked.get(account.getAccountid());
+
+            // Update the account balance
+            target.setBalance(AccountHelper.balanceOf(target).plus(amount).toBigDecimal());
+            accountRepository.save(target);
+
+            ledgerService.post(new Journal()
+                    .move(LedgerService.EXTERNAL, LedgerService.ledgerAccount(target), amount));
+
+            log.info("Deposited {} into {} account for user {}", amount, target.getCode(), user.getUsername());
+
+            // Create and save a transaction record for the deposit
+            Transaction transaction = Transaction.builder()
+                    .type(Type.DEPOSIT)
+                    .amount(amount.toBigDecimal())
+                    .txFee(BigDecimal.ZERO)   //No fee for deposit
+                    .sender("External")       //Placeholder (Stripe later)
+                    .receiver(target.getCode())
+                    .description("Deposit of " + amount.toBigDecimal() + " into " + target.getCode() + " account")
+                    .counterparty("External")
+                    .owner(user)
+                    .status(Status.COMPLETED)
+                    .account(target)
+                    .build();
 
-        return transactionRepository.save(transaction);
+            Transaction saved = transactionRepository.save(transaction);
+            spendingRollupService.record(saved);
+            return saved;
+        });
     }
 }
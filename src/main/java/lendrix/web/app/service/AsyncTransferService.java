@@ -0,0 +1,253 @@
+package lendrix.web.app.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lendrix.web.app.dto.TransferDto;
+import lendrix.web.app.entity.Account;
+import lendrix.web.app.entity.QueuedTransfer;
+import lendrix.web.app.entity.Transaction;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.enums.TransferStatus;
+import lendrix.web.app.repository.AccountRepository;
+import lendrix.web.app.repository.QueuedTransferRepository;
+import lendrix.web.app.service.helper.AccountHelper;
+import lendrix.web.app.service.helper.AccountLockManager;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Async transfer mode: requests are validated and queued in transfer_queue, and a
+pool of virtual-thread workers drains the queue in micro-batches through AccountHelper.
+ */
+@Service
+@Slf4j
+public class AsyncTransferService {
+
+    private final QueuedTransferRepository queuedTransferRepository;
+    private final AccountRepository accountRepository;
+    private final AccountHelper accountHelper;
+    private final AccountLockManager accountLockManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer queueLatency;
+
+    @Value("${transfers.async.workers:4}")
+    private int workerCount;
+
+    @Value("${transfers.async.batch-size:50}")
+    private int batchSize;
+
+    @Value("${transfers.async.poll-interval-ms:200}")
+    private long pollIntervalMs;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+    private volatile long lastRequeueAt;
+
+    public AsyncTransferService(QueuedTransferRepository queuedTransferRepository,
+                                AccountRepository accountRepository,
+                                AccountHelper accountHelper,
+                                AccountLockManager accountLockManager,
+                                TransactionTemplate transactionTemplate,
+                                MeterRegistry meterRegistry) {
+        this.queuedTransferRepository = queuedTransferRepository;
+        this.accountRepository = accountRepository;
+        this.accountHelper = accountHelper;
+        this.accountLockManager = accountLockManager;
+        this.transactionTemplate = transactionTemplate;
+
+        Gauge.builder("transfers.queue.depth", queuedTransferRepository,
+                        repository -> repository.countByStatus(TransferStatus.QUEUED))
+                .description("Transfers waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("transfers.queue.lag", queuedTransferRepository, AsyncTransferService::oldestQueuedAgeSeconds)
+                .description("Age in seconds of the oldest queued transfer")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.queueLatency = Timer.builder("transfers.queue.latency")
+                .description("Time from enqueue until a worker finished the transfer")
+                .register(meterRegistry);
+    }
+
+    /**
+    Validates the transfer and stores it for the workers.
+     */
+    public QueuedTransfer enqueue(TransferDto transferDto, User user) {
+        if (transferDto.getAmount() == null || transferDto.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be greater than zero");
+        }
+        accountRepository.findByCodeAndOwnerUid(transferDto.getSenderAccountCode(), user.getUid())
+                .orElseThrow(() -> new IllegalArgumentException("Sender account not found"));
+        findRecipient(transferDto.getRecipientAccountNumber());
+
+        return queuedTransferRepository.save(QueuedTransfer.builder()
+                .owner(user)
+                .senderAccountCode(transferDto.getSenderAccountCode())
+                .recipientAccountNumber(transferDto.getRecipientAccountNumber())
+                .amount(transferDto.getAmount())
+                .status(TransferStatus.QUEUED)
+                .build());
+    }
+
+    public QueuedTransfer getTransfer(String id, User user) {
+        return queuedTransferRepository.findByIdAndOwnerUid(id, user.getUid())
+                .orElseThrow(() -> new IllegalArgumentException("Transfer not found"));
+    }
+
+    public synchronized void startWorkers() {
+        if (running) {
+            return;
+        }
+        running = true;
+        requeueStuckTransfers();
+
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("transfer-worker-" + i).start(this::drainQueue));
+        }
+        log.info("Started {} async transfer workers", workerCount);
+    }
+
+    @PreDestroy
+    public synchronized void stopWorkers() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        workers.clear();
+    }
+
+    private void drainQueue() {
+        while (running) {
+            try {
+                List<QueuedTransfer> batch = claimBatch();
+                if (batch.isEmpty()) {
+                    if (System.currentTimeMillis() - lastRequeueAt > 60_000) {
+                        requeueStuckTransfers();
+                    }
+                    Thread.sleep(pollIntervalMs);
+                    continue;
+                }
+                batch.forEach(this::process);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Async transfer worker failed, retrying", e);
+                sleepQuietly();
+            }
+        }
+    }
+
+    //A transfer claimed by a worker that died never committed (it commits together with
+    //its COMPLETED mark), so it can safely run again. A worker that was only slow finds its
+    //claim token gone and skips the transfer.
+    private void requeueStuckTransfers() {
+        lastRequeueAt = System.currentTimeMillis();
+        Integer requeued = transactionTemplate.execute(status ->
+                queuedTransferRepository.requeueStuck(LocalDateTime.now().minusMinutes(5)));
+        if (requeued != null && requeued > 0) {
+            log.warn("Requeued {} transfers left in PROCESSING", requeued);
+        }
+    }
+
+    private List<QueuedTransfer> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            List<QueuedTransfer> claimed = queuedTransferRepository
+                    .findByStatusOrderByCreatedAt(TransferStatus.QUEUED, Limit.of(batchSize));
+            LocalDateTime now = LocalDateTime.now();
+            String token = UUID.randomUUID().toString();
+            for (QueuedTransfer transfer : claimed) {
+                transfer.setStatus(TransferStatus.PROCESSING);
+                transfer.setClaimedAt(now);
+                transfer.setClaimToken(token);
+            }
+            return queuedTransferRepository.saveAll(claimed);
+        });
+    }
+
+    private void process(QueuedTransfer queued) {
+        try {
+            Account sender = accountRepository.findByCodeAndOwnerUid(queued.getSenderAccountCode(), queued.getOwner().getUid())
+                    .orElseThrow(() -> new IllegalArgumentException("Sender account not found"));
+            Account receiver = findRecipient(queued.getRecipientAccountNumber());
+
+            //the transfer and its COMPLETED mark commit together, and only while this worker still holds the claim
+            Transaction transaction = accountLockManager.withLockedAccounts(accountHelper.accountsToLock(sender, receiver), locked -> {
+                Optional<QueuedTransfer> claimed = lockClaimed(queued);
+                if (claimed.isEmpty()) {
+                    return null;
+                }
+                Transaction applied = accountHelper.applyTransfer(
+                        locked.get(sender.getAccountid()),
+                        locked.getOrDefault(receiver.getAccountid(), receiver),
+                        queued.getAmount(),
+                        queued.getOwner());
+                finish(claimed.get(), TransferStatus.COMPLETED, applied.getTxid(), null);
+                return applied;
+            });
+            if (transaction == null) {
+                log.warn("Transfer {} was requeued while this worker held it, skipped", queued.getId());
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            transactionTemplate.executeWithoutResult(status ->
+                    lockClaimed(queued).ifPresent(claimed -> finish(claimed, TransferStatus.FAILED, null, e.getMessage())));
+        } catch (RuntimeException e) {
+            //left in PROCESSING, so requeueStuckTransfers retries it later; the rest of the batch goes on
+            log.error("Transfer {} failed unexpectedly, it will be retried after requeue", queued.getId(), e);
+        }
+    }
+
+    //The queue row locked FOR UPDATE, if it is still PROCESSING under this worker's claim
+    private Optional<QueuedTransfer> lockClaimed(QueuedTransfer queued) {
+        return queuedTransferRepository.findByIdForUpdate(queued.getId())
+                .filter(current -> current.getStatus() == TransferStatus.PROCESSING
+                        && queued.getClaimToken() != null
+                        && queued.getClaimToken().equals(current.getClaimToken()));
+    }
+
+    private void finish(QueuedTransfer queued, TransferStatus status, String transactionId, String error) {
+        queued.setStatus(status);
+        queued.setTransactionId(transactionId);
+        queued.setError(error);
+        queued.setCompletedAt(LocalDateTime.now());
+        queued.setClaimToken(null);
+        queuedTransferRepository.save(queued);
+        queueLatency.record(Duration.between(queued.getCreatedAt(), queued.getCompletedAt()).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private Account findRecipient(String recipientAccountNumber) {
+        long accountNumber;
+        try {
+            accountNumber = Long.parseLong(recipientAccountNumber);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Recipient account number must be numeric");
+        }
+        return accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new IllegalArgumentException("Receiver account not found"));
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollIntervalMs * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static double oldestQueuedAgeSeconds(QueuedTransferRepository repository) {
+        LocalDateTime oldest = repository.findOldestCreatedAt(TransferStatus.QUEUED);
+        return oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis() / 1000.0;
+    }
+}
@@ -0,0 +1,45 @@
+package lendrix.web.app.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BalanceSnapshotScheduleTaskRunnerComponent implements CommandLineRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(BalanceSnapshotScheduleTaskRunnerComponent.class);
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public BalanceSnapshotScheduleTaskRunnerComponent(BalanceSnapshotService balanceSnapshotService, ScheduledExecutorService scheduler) {
+        this.balanceSnapshotService = balanceSnapshotService;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        logger.info("Scheduling end-of-day balance snapshots");
+        //hourly: a no-op until a new day has finished, and it catches up after downtime.
+        //The first run backfills every past day, so runs get their own thread and the shared scheduler stays free
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (!running.compareAndSet(false, true)) {
+                return;
+            }
+            Thread.ofVirtual().name("balance-snapshots").start(() -> {
+                try {
+                    balanceSnapshotService.snapshotPendingDays();
+                } catch (RuntimeException e) {
+                    logger.error("Balance snapshot failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }, 2, 60, TimeUnit.MINUTES);
+    }
+}
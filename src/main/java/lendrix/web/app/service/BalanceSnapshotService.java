@@ -0,0 +1,91 @@
+package lendrix.web.app.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lendrix.web.app.entity.DailyBalance;
+import lendrix.web.app.repository.DailyBalanceRepository;
+import lendrix.web.app.repository.LedgerEntryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Past balances of ledger accounts, answered from end-of-day snapshots of the journal.
+The nightly job rolls every account posted to on a day forward from its previous
+snapshot in one bulk statement, and a point-in-time read adds to the nearest
+snapshot only the entries after it, i.e. at most the entries of the day asked about
+(plus any days the job has not reached yet).
+
+Balances from before the ledger existed only appear from the day their opening
+entry was posted by the first checkpoint.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BalanceSnapshotService {
+
+    public record BalanceAt(BigDecimal balance, LocalDate snapshotDay) {}
+
+    private final DailyBalanceRepository dailyBalanceRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    //entries still committing right after midnight belong to the previous day
+    @Value("${balances.snapshot.grace-minutes:15}")
+    private long graceMinutes;
+
+    /**
+    Snapshots every finished day not snapshotted yet, oldest first, one transaction per day.
+    The first run backfills from the first ledger posting.
+     */
+    public int snapshotPendingDays() {
+        LocalDate lastFinishedDay = lastFinishedDay();
+        Optional<LocalDate> lastSnapshot = dailyBalanceRepository.findLastSnapshotDay();
+        LocalDate day = lastSnapshot.map(last -> last.plusDays(1))
+                .or(() -> ledgerEntryRepository.findFirstPostingTime().map(LocalDateTime::toLocalDate))
+                .orElse(null);
+        if (day == null) {
+            return 0;
+        }
+
+        int days = 0;
+        for (; !day.isAfter(lastFinishedDay); day = day.plusDays(1)) {
+            long startedAt = System.nanoTime();
+            LocalDate snapshotDay = day;
+            Integer accounts = transactionTemplate.execute(status -> dailyBalanceRepository.snapshotDay(
+                    snapshotDay, snapshotDay.atStartOfDay(), snapshotDay.plusDays(1).atStartOfDay()));
+            log.info("Snapshotted end-of-day balances of {} for {} ledger accounts in {}ms",
+                    snapshotDay, accounts, (System.nanoTime() - startedAt) / 1_000_000);
+            days++;
+        }
+        return days;
+    }
+
+    //the last day whose entries have all committed, i.e. the last day snapshotPendingDays covers
+    public LocalDate lastFinishedDay() {
+        return LocalDateTime.now().minusMinutes(graceMinutes).toLocalDate().minusDays(1);
+    }
+
+    /**
+    Balance of a ledger account as of at: the last end-of-day snapshot before at's day plus
+    the entries posted after that snapshot up to at.
+     */
+    public BalanceAt balanceAt(String ledgerAccount, LocalDateTime at) {
+        if (dailyBalanceRepository.findLastSnapshotDay().isEmpty() && ledgerEntryRepository.findFirstPostingTime().isPresent()) {
+            //without any snapshot the replay would be the account's whole history
+            throw new IllegalStateException("Balance snapshots have not been built yet");
+        }
+        Optional<DailyBalance> snapshot = dailyBalanceRepository
+                .findFirstByLedgerAccountAndBalanceDayLessThanOrderByBalanceDayDesc(ledgerAccount, at.toLocalDate());
+        BigDecimal base = snapshot.map(DailyBalance::getBalance).orElse(BigDecimal.ZERO);
+        long afterEntryId = snapshot.map(DailyBalance::getLastEntryId).orElse(0L);
+        BigDecimal balance = base.add(ledgerEntryRepository.sumPostedAfterUntil(ledgerAccount, afterEntryId, at));
+        return new BalanceAt(balance, snapshot.map(DailyBalance::getBalanceDay).orElse(null));
+    }
+}
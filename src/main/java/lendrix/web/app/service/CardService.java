@@ -2,16 +2,23 @@ package lendrix.web.app.service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import javax.naming.OperationNotSupportedException;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import lendrix.web.app.entity.*;
 import lendrix.web.app.enums.*;
 import lendrix.web.app.repository.*;
+import lendrix.web.app.service.LedgerService.Journal;
 import lendrix.web.app.service.helper.AccountHelper;
+import lendrix.web.app.service.helper.AccountLockManager;
+import lendrix.web.app.service.helper.HotAccountHelper;
+import lendrix.web.app.service.helper.OptimisticRetryPolicy;
+import lendrix.web.app.util.Money;
 import lendrix.web.app.util.RandomUtil;
 import lombok.RequiredArgsConstructor;
 
@@ -23,11 +30,16 @@ public class CardService {
         private final CardRepository cardRepository;
         private final TransactionRepository transactionRepository;
         private final AccountHelper accountHelper;
+        private final AccountLockManager accountLockManager;
+        private final HotAccountHelper hotAccountHelper;
+        private final LedgerService ledgerService;
+        private final OptimisticRetryPolicy optimisticRetryPolicy;
+        private final TransactionTemplate transactionTemplate;
+        private final SpendingRollupService spendingRollupService;
 
         /**
         Creates a new card for the user in the specified currency.
         */
-        @Transactional
         public Card createCard(BigDecimal amount, User user, String billingAddress, int pin, String currencyCode)
         throws OperationNotSupportedException {
 
@@ -41,11 +53,22 @@ public class CardService {
                 .orElseThrow(() -> new IllegalArgumentException("No " + currencyCode + " account found for user"));
 
         // Validate funds
+        Money funding = accountHelper.toMoney(amount, currencyCode);
         accountHelper.validateSufficientFunds(account, amount);
 
+        return accountLockManager.withLockedAccounts(List.of(account), locked -> {
+        Account source = locked.get(account.getAccountid());
+
+        // Re-check under the lock, the balance may have moved since validation
+        if (ledgerService.balanceOf(source).compareTo(funding) < 0) {
+                throw new IllegalArgumentException("Insufficient funds in the account");
+        }
+        hotAccountHelper.sweepIfShort(source, funding.toBigDecimal());
+        Money sourceBalance = AccountHelper.balanceOf(source);
+
         // Deduct funds from account to fund the card
-        account.setBalance(account.getBalance().subtract(amount));
-        accountRepository.save(account);
+        source.setBalance(sourceBalance.minus(funding).toBigDecimal());
+        accountRepository.save(source);
 
         // Log transaction for withdrawal
         accountHelper.createAccountTransaction(
@@ -53,8 +76,8 @@ public class CardService {
                 Type.WITHDRAW,
                 BigDecimal.ZERO,
                 user,
-                account,
-                amount,
+                source,
+                funding.toBigDecimal(),
                 "Card creation fee"
         );
 
@@ -68,7 +91,7 @@ public class CardService {
         Card card = Card.builder()
                 .cardNumber(cardNumber)
                 .cardHolder(user.getFirstname() + " " + user.getLastname())
-                .balance(amount)
+                .balance(funding.toBigDecimal())
                 .owner(user)
                 .billingAddress(billingAddress)
                 .pin(pin)
@@ -80,21 +103,25 @@ public class CardService {
         cardRepository.save(card);
         cardRepository.flush(); // Ensure card is written to DB before transaction references it
 
+        ledgerService.post(new Journal()
+                .move(LedgerService.ledgerAccount(source), LedgerService.ledgerAccount(card), funding));
+
         //Log credit to card account
         accountHelper.createAccountTransaction(
                 1,
                 Type.CREDIT,
                 BigDecimal.ZERO,
                 user,
-                account,
-                amount,
+                source,
+                funding.toBigDecimal(),
                 "Card funded"
         );
 
         //Now safely create card transaction record
-        createCardTransaction(amount, user, card, BigDecimal.ZERO, Type.CREDIT);
+        createCardTransaction(funding.toBigDecimal(), user, card, BigDecimal.ZERO, Type.CREDIT, "Card funded");
 
         return card;
+        });
         }
 
         /**
@@ -106,22 +133,30 @@ public class CardService {
 
         /**
         Adds money to the card (and syncs to user account in the same currency).
+        Optimistic: card and account are version-checked at commit and the whole
+        attempt is re-run on a conflict.
         */
-        @Transactional
         public Transaction creditCard(BigDecimal amount, User user) {
+        return optimisticRetryPolicy.execute("card.credit", user.getUid(), () -> transactionTemplate.execute(status -> {
         Card card = getCard(user);
+        Money credit = accountHelper.toMoney(amount, card.getCurrency());
 
         //update card balance
-        card.setBalance(card.getBalance().add(amount));
+        card.setBalance(AccountHelper.balanceOf(card).plus(credit).toBigDecimal());
         cardRepository.save(card);
-        cardRepository.flush(); //flush to DB before creating transaction
 
         //update matching account balance
         Account account = accountRepository.findByCodeAndOwnerUid(card.getCurrency(), user.getUid())
                 .orElseThrow();
-        account.setBalance(account.getBalance().add(amount));
+        account.setBalance(AccountHelper.balanceOf(account).plus(credit).toBigDecimal());
         accountRepository.save(account);
 
+        cardRepository.flush(); //flush to DB before creating transaction, fails fast on a version conflict
+
+        ledgerService.post(new Journal()
+                .move(LedgerService.EXTERNAL, LedgerService.ledgerAccount(card), credit)
+                .move(LedgerService.EXTERNAL, LedgerService.ledgerAccount(account), credit));
+
         //log account credit transaction
         accountHelper.createAccountTransaction(
                 1,
@@ -129,32 +164,41 @@ public class CardService {
                 BigDecimal.ZERO,
                 user,
                 account,
-                amount,
+                credit.toBigDecimal(),
                 "Card credited"
         );
 
         //log card transaction
-        return createCardTransaction(amount, user, card, BigDecimal.ZERO, Type.CREDIT);
+        return createCardTransaction(credit.toBigDecimal(), user, card, BigDecimal.ZERO, Type.CREDIT, "Card credited");
+        }));
         }
 
         /**
         Deducts money from the card 
+        Optimistic: card and account are version-checked at commit and the whole
+        attempt is re-run on a conflict.
         */
-        @Transactional
         public Transaction debitCard(BigDecimal amount, User user) {
+        return optimisticRetryPolicy.execute("card.debit", user.getUid(), () -> transactionTemplate.execute(status -> {
         Card card = getCard(user);
+        Money debit = accountHelper.toMoney(amount, card.getCurrency());
 
         //update card balance
-        card.setBalance(card.getBalance().subtract(amount));
+        card.setBalance(AccountHelper.balanceOf(card).minus(debit).toBigDecimal());
         cardRepository.save(card);
-        cardRepository.flush(); //lush to DB before creating transaction
 
         //update matching account balance
         Account account = accountRepository.findByCodeAndOwnerUid(card.getCurrency(), user.getUid())
                 .orElseThrow();
-        account.setBalance(account.getBalance().subtract(amount));
+        account.setBalance(AccountHelper.balanceOf(account).minus(debit).toBigDecimal());
         accountRepository.save(account);
 
+        cardRepository.flush(); //lush to DB before creating transaction, fails fast on a version conflict
+
+        ledgerService.post(new Journal()
+                .move(LedgerService.ledgerAccount(card), LedgerService.EXTERNAL, debit)
+                .move(LedgerService.ledgerAccount(account), LedgerService.EXTERNAL, debit));
+
         //log account debit transaction
         accountHelper.createAccountTransaction(
                 1,
@@ -162,18 +206,19 @@ public class CardService {
                 BigDecimal.ZERO,
                 user,
                 account,
-                amount,
+                debit.toBigDecimal(),
                 "Card debited"
         );
 
         //log card transaction
-        return createCardTransaction(amount, user, card, BigDecimal.ZERO, Type.WITHDRAW);
+        return createCardTransaction(debit.toBigDecimal(), user, card, BigDecimal.ZERO, Type.WITHDRAW, "Card debited");
+        }));
         }
 
         /**
         Creates a transaction record for card operations (credit/debit).
         */
-        private Transaction createCardTransaction(BigDecimal amount, User user, Card card, BigDecimal txFee, Type type) {
+        private Transaction createCardTransaction(BigDecimal amount, User user, Card card, BigDecimal txFee, Type type, String description) {
         Transaction tx = Transaction.builder()
                 .card(card)
                 .owner(user)
@@ -181,8 +226,22 @@ public class CardService {
                 .txFee(txFee)
                 .status(Status.COMPLETED)
                 .type(type)
+                .description(description)
+                .build();
+        Transaction saved = transactionRepository.save(tx);
+        spendingRollupService.record(tx);
+        return saved;
+        }
+
+        /**
+        The user's card with its balance read from the ledger, for display. A copy, so the
+        balance is never written back.
+        */
+        public Card viewCard(User user) {
+        Card card = getCard(user);
+        return card.toBuilder()
+                .balance(ledgerService.balanceOf(LedgerService.ledgerAccount(card)))
                 .build();
-        return transactionRepository.save(tx);
         }
 
         /**
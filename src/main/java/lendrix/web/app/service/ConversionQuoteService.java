@@ -0,0 +1,68 @@
+package lendrix.web.app.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import lendrix.web.app.dto.ConversionQuoteDto;
+import lendrix.web.app.dto.ConvertDto;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.service.helper.AccountHelper;
+import lendrix.web.app.service.helper.AccountHelper.ConversionTerms;
+import lendrix.web.app.util.ExpiringCache;
+
+/**
+Two-phase conversion: a quote fixes the rate, fee and received amount for a short
+time, and the conversion can then be executed on exactly those terms.
+Quotes live only in memory and can be used once.
+ */
+@Service
+public class ConversionQuoteService {
+
+    private record Quote(String uid, ConversionTerms terms, Instant expiresAt) {}
+
+    private final AccountHelper accountHelper;
+    private final ExpiringCache<String, Quote> quotes;
+    private final Duration ttl;
+
+    public ConversionQuoteService(AccountHelper accountHelper,
+                                  @Value("${conversion.quote.ttl-seconds:30}") long ttlSeconds,
+                                  @Value("${conversion.quote.max-entries:50000}") int maxEntries) {
+        this.accountHelper = accountHelper;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.quotes = new ExpiringCache<>(maxEntries, ttl);
+    }
+
+    public ConversionQuoteDto quote(ConvertDto convertDto, User user) throws Exception {
+        ConversionTerms terms = accountHelper.priceConversion(convertDto, user.getUid());
+        Quote quote = new Quote(user.getUid(), terms, Instant.now().plus(ttl));
+        String quoteId = UUID.randomUUID().toString();
+        quotes.put(quoteId, quote);
+
+        return ConversionQuoteDto.builder()
+                .quoteId(quoteId)
+                .fromCurrency(terms.fromCurrency())
+                .toCurrency(terms.toCurrency())
+                .amount(terms.send().toBigDecimal())
+                .fee(terms.fee().toBigDecimal())
+                .receivedAmount(terms.received().toBigDecimal())
+                .rate(terms.rate())
+                .rateVersion(terms.rateVersion())
+                .expiresAt(quote.expiresAt())
+                .build();
+    }
+
+    /**
+    Takes the quote out of the store so it cannot be used twice.
+     */
+    public ConversionTerms redeem(String quoteId, User user) {
+        Quote quote = quotes.remove(quoteId);
+        if (quote == null || !quote.uid().equals(user.getUid())) {
+            throw new IllegalArgumentException("Quote not found or expired");
+        }
+        return quote.terms();
+    }
+}
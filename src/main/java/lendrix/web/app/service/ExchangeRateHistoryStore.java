@@ -0,0 +1,374 @@
+package lendrix.web.app.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lendrix.web.app.util.CurrencyRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Append-only history of published rate snapshots in a memory-mapped file, so the rate
+behind any past conversion can be looked up without keeping history on the heap.
+
+The file is a header followed by fixed-size blocks of BLOCK_ENTRIES snapshots. Each
+block is columnar: the snapshot times, the snapshot versions, then per currency a
+base rate and one int delta per snapshot, all in fixed point (RATE_SCALE). A block is
+closed early, and the next one rebased on the new rates, when a delta no longer fits an
+int or a currency appears or disappears. Lookups binary-search the blocks by
+their first timestamp and then the timestamps inside one block, so rateAt is O(log n).
+ */
+@Component
+@Slf4j
+public class ExchangeRateHistoryStore {
+
+    public record RatePoint(Instant at, long version, double rate) {}
+
+    private static final int MAGIC = 0x4C465848; // "LFXH"
+    private static final int FORMAT_VERSION = 3;
+    private static final int BLOCK_ENTRIES = 64;
+    private static final int SEGMENT_BLOCKS = 64;
+    private static final double RATE_SCALE = 1e8;
+    //half the long range in fixed point, about 4.6e10, so subtracting two rates cannot overflow
+    private static final double MAX_RATE = Long.MAX_VALUE / 2 / RATE_SCALE;
+    private static final long MISSING_BASE = Long.MIN_VALUE;
+    private static final int MISSING_DELTA = Integer.MIN_VALUE;
+
+    @Value("${fx.history.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fx.history.path:data/fx-history.bin}")
+    private String path;
+
+    private final int currencies = CurrencyRegistry.size();
+    private final int headerSize = align(16 + 4 * currencies);
+    private final int timesOffset = 8;
+    private final int versionsOffset = timesOffset + 8 * BLOCK_ENTRIES;
+    private final int basesOffset = versionsOffset + 8 * BLOCK_ENTRIES;
+    private final int deltasOffset = basesOffset + 8 * currencies;
+    private final int blockSize = align(deltasOffset + 4 * currencies * BLOCK_ENTRIES);
+
+    private FileChannel channel;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    //blocks in use, the last one possibly partly filled; published after the data is written
+    private volatile int blockCount;
+    private volatile long lastVersion;
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path file = Path.of(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        if (Files.exists(file) && Files.size(file) > 0 && !headerMatches(file)) {
+            Path rolled = file.resolveSibling(file.getFileName() + "." + System.currentTimeMillis());
+            Files.move(file, rolled, StandardCopyOption.ATOMIC_MOVE);
+            log.warn("FX history layout changed, moved old history to {}", rolled);
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+        if (header.getInt(0) != MAGIC) {
+            writeHeader(header);
+        }
+
+        int blocks = 0;
+        while (blockOffsetInFile(blocks) + blockSize <= channel.size() && count(blocks) > 0) {
+            blocks++;
+        }
+        blockCount = blocks;
+        if (blocks > 0) {
+            lastVersion = segment(blocks - 1).getLong(versionAt(blocks - 1, count(blocks - 1) - 1));
+        }
+        log.info("Opened FX history {} with {} blocks", file, blocks);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            segments.forEach(MappedByteBuffer::force);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+    Version of the newest stored snapshot, 0 when the history is empty.
+     */
+    public long lastVersion() {
+        return lastVersion;
+    }
+
+    public synchronized void append(ExchangeRateService.RateSnapshot snapshot) {
+        if (channel == null) {
+            return;
+        }
+        long[] fixed = new long[currencies];
+        for (int c = 0; c < currencies; c++) {
+            fixed[c] = toFixed(CurrencyRegistry.code(c), snapshot.rates().get(CurrencyRegistry.code(c)));
+        }
+
+        int block = blockCount - 1;
+        if (block < 0 || count(block) == BLOCK_ENTRIES || !fitsBlock(block, fixed)) {
+            block = blockCount;
+            startBlock(block, fixed);
+        }
+
+        MappedByteBuffer buffer = segment(block);
+        int base = blockOffset(block);
+        int entry = count(block);
+        buffer.putLong(base + timesOffset + 8 * entry, snapshot.fetchedAt().toEpochMilli());
+        buffer.putLong(base + versionsOffset + 8 * entry, snapshot.version());
+        for (int c = 0; c < currencies; c++) {
+            long blockBase = buffer.getLong(base + basesOffset + 8 * c);
+            int delta = fixed[c] == MISSING_BASE || blockBase == MISSING_BASE ? MISSING_DELTA : (int) (fixed[c] - blockBase);
+            buffer.putInt(deltaAt(block, c, entry), delta);
+        }
+        //the count goes last: a crash before this line leaves the entry invisible
+        buffer.putInt(base, entry + 1);
+        buffer.force();
+
+        lastVersion = snapshot.version();
+        blockCount = block + 1;
+    }
+
+    /**
+    The rate of the snapshot that was current at the given instant.
+     */
+    public Optional<RatePoint> rateAt(String currency, Instant at) {
+        int c = CurrencyRegistry.ordinal(currency);
+        int blocks = blockCount;
+        if (c < 0 || blocks == 0) {
+            return Optional.empty();
+        }
+        long millis = at.toEpochMilli();
+        int block = lastBlockAtOrBefore(blocks, millis);
+        if (block < 0) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(point(block, c, lastEntryAtOrBefore(block, millis)));
+    }
+
+    /**
+    Every stored rate for the currency between from and to (inclusive), oldest first,
+    thinned out evenly to at most maxPoints.
+     */
+    public List<RatePoint> range(String currency, Instant from, Instant to, int maxPoints) {
+        int c = CurrencyRegistry.ordinal(currency);
+        int blocks = blockCount;
+        List<RatePoint> points = new ArrayList<>();
+        if (c < 0 || blocks == 0 || maxPoints <= 0) {
+            return points;
+        }
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+        for (int block = Math.max(0, lastBlockAtOrBefore(blocks, fromMillis)); block < blocks; block++) {
+            int count = count(block);
+            if (time(block, count - 1) < fromMillis) {
+                continue;
+            }
+            if (time(block, 0) > toMillis) {
+                break;
+            }
+            for (int entry = 0; entry < count; entry++) {
+                long millis = time(block, entry);
+                if (millis >= fromMillis && millis <= toMillis) {
+                    RatePoint point = point(block, c, entry);
+                    if (point != null) {
+                        points.add(point);
+                    }
+                }
+            }
+        }
+        if (points.size() <= maxPoints) {
+            return points;
+        }
+        List<RatePoint> thinned = new ArrayList<>(maxPoints);
+        double stride = (double) points.size() / maxPoints;
+        for (int i = 0; i < maxPoints; i++) {
+            thinned.add(points.get((int) (i * stride)));
+        }
+        return thinned;
+    }
+
+    //Last block whose first snapshot is at or before millis, -1 if there is none
+    private int lastBlockAtOrBefore(int blocks, long millis) {
+        int low = 0;
+        int high = blocks - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (time(mid, 0) <= millis) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private int lastEntryAtOrBefore(int block, long millis) {
+        int low = 0;
+        int high = count(block) - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (time(block, mid) <= millis) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private RatePoint point(int block, int currency, int entry) {
+        MappedByteBuffer buffer = segment(block);
+        long base = buffer.getLong(blockOffset(block) + basesOffset + 8 * currency);
+        int delta = buffer.getInt(deltaAt(block, currency, entry));
+        if (base == MISSING_BASE || delta == MISSING_DELTA) {
+            return null;
+        }
+        return new RatePoint(Instant.ofEpochMilli(time(block, entry)),
+                buffer.getLong(versionAt(block, entry)),
+                (base + delta) / RATE_SCALE);
+    }
+
+    //Whether every rate can be stored as an int delta from the block's base
+    private boolean fitsBlock(int block, long[] fixed) {
+        MappedByteBuffer buffer = segment(block);
+        for (int c = 0; c < currencies; c++) {
+            long base = buffer.getLong(blockOffset(block) + basesOffset + 8 * c);
+            if (base == MISSING_BASE || fixed[c] == MISSING_BASE) {
+                if (base != fixed[c]) {
+                    return false;
+                }
+                continue;
+            }
+            long delta = fixed[c] - base;
+            if (delta <= MISSING_DELTA || delta > Integer.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long toFixed(String currency, Double rate) {
+        if (rate == null) {
+            return MISSING_BASE;
+        }
+        if (!Double.isFinite(rate) || Math.abs(rate) > MAX_RATE) {
+            log.warn("FX history cannot store rate {} for {}, recording it as missing", rate, currency);
+            return MISSING_BASE;
+        }
+        return Math.round(rate * RATE_SCALE);
+    }
+
+    private void startBlock(int block, long[] bases) {
+        MappedByteBuffer buffer = segment(block);
+        int offset = blockOffset(block);
+        buffer.putInt(offset, 0);
+        for (int c = 0; c < currencies; c++) {
+            buffer.putLong(offset + basesOffset + 8 * c, bases[c]);
+        }
+    }
+
+    private int count(int block) {
+        return segment(block).getInt(blockOffset(block));
+    }
+
+    private long time(int block, int entry) {
+        return segment(block).getLong(blockOffset(block) + timesOffset + 8 * entry);
+    }
+
+    private int versionAt(int block, int entry) {
+        return blockOffset(block) + versionsOffset + 8 * entry;
+    }
+
+    private int deltaAt(int block, int currency, int entry) {
+        return blockOffset(block) + deltasOffset + 4 * (currency * BLOCK_ENTRIES + entry);
+    }
+
+    private int blockOffset(int block) {
+        return (block % SEGMENT_BLOCKS) * blockSize;
+    }
+
+    private long blockOffsetInFile(int block) {
+        return headerSize + (long) block * blockSize;
+    }
+
+    //Segments are mapped lazily and never unmapped; mapping past the end grows the file
+    private MappedByteBuffer segment(int block) {
+        int index = block / SEGMENT_BLOCKS;
+        if (index < segments.size()) {
+            return segments.get(index);
+        }
+        synchronized (this) {
+            try {
+                while (segments.size() <= index) {
+                    long position = headerSize + (long) segments.size() * SEGMENT_BLOCKS * blockSize;
+                    segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, (long) SEGMENT_BLOCKS * blockSize));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot map FX history segment " + index, e);
+            }
+            return segments.get(index);
+        }
+    }
+
+    private void writeHeader(MappedByteBuffer header) {
+        header.putInt(4, FORMAT_VERSION);
+        header.putInt(8, BLOCK_ENTRIES);
+        header.putInt(12, currencies);
+        for (int c = 0; c < currencies; c++) {
+            header.put(16 + 4 * c, CurrencyRegistry.code(c).getBytes(StandardCharsets.US_ASCII), 0, 3);
+        }
+        header.putInt(0, MAGIC);
+        header.force();
+    }
+
+    private boolean headerMatches(Path file) throws IOException {
+        try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (existing.size() < headerSize) {
+                return false;
+            }
+            MappedByteBuffer header = existing.map(FileChannel.MapMode.READ_ONLY, 0, headerSize);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION
+                    || header.getInt(8) != BLOCK_ENTRIES || header.getInt(12) != currencies) {
+                return false;
+            }
+            byte[] code = new byte[3];
+            for (int c = 0; c < currencies; c++) {
+                header.get(16 + 4 * c, code);
+                if (!CurrencyRegistry.code(c).equals(new String(code, StandardCharsets.US_ASCII))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static int align(int size) {
+        return (size + 63) & ~63;
+    }
+}
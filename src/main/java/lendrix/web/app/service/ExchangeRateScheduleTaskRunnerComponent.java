@@ -22,11 +22,15 @@ public class ExchangeRateScheduleTaskRunnerComponent implements CommandLineRunne
 
     @Override
     public void run(String... args) throws Exception {
-        logger.info("Calling The Currency API endpoint for exchange rate");
+        //runs in the background: until it succeeds requests are served from the persisted snapshot
+        logger.info("Scheduling exchange rate refresh");
         scheduler.scheduleWithFixedDelay(() -> {
-            rateService.getExchangeRate();
+            try {
+                rateService.refresh();
+            } catch (Exception e) {
+                //keep serving the last snapshot; an uncaught exception would cancel the schedule
+                logger.error("Exchange rate refresh failed", e);
+            }
         }, 0, 12, TimeUnit.HOURS);
-
-        logger.info("Ended Calling The Currency API endpoint ");
     }
 }
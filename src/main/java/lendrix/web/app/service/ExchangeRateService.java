@@ -1,49 +1,200 @@
 package lendrix.web.app.service;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
-import lombok.Getter;
+import jakarta.annotation.PostConstruct;
+import lendrix.web.app.util.CurrencyRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 @Component
 @RequiredArgsConstructor
-@Getter
+@Slf4j
 public class ExchangeRateService {
 
-    private final RestTemplate restTemplate;
+    /**
+    An immutable set of rates (units per USD) as fetched at one point in time.
+    A new snapshot with the next version replaces the previous one as a whole, so
+    a reader holding a snapshot always sees rates that belong together.
+    crossRates is the N x N matrix of CurrencyRegistry ordinals, precomputed when
+    the snapshot is built: crossRates[from * N + to] converts one unit of from.
+     */
+    public record RateSnapshot(long version, Map<String, Double> rates, Instant fetchedAt, String source,
+                               @JsonIgnore double[] crossRates) {
 
-    private final Map<String, Double> rates = new HashMap<>();
+        static final RateSnapshot EMPTY = of(0, Map.of(), Instant.EPOCH, "none");
 
-    private final Set<String> CURRENCIES = Set.of(
-        "GHS", "USD", "EUR", "GBP", "JPY", "CHF", "CAD", "AUD", "NZD",
-        "CNY", "HKD", "SGD", "INR", "ZAR", "BRL", "RUB", "KRW", "SEK",
-        "NOK", "DKK", "MYR", "PHP", "IDR", "THB", "MXN", "TRY", "AED",
-        "SAR", "EGP", "NGN", "KES", "TZS", "UGX"
-    );
+        public static RateSnapshot of(long version, Map<String, Double> rates, Instant fetchedAt, String source) {
+            int n = CurrencyRegistry.size();
+            double[] perUsd = new double[n];
+            for (int i = 0; i < n; i++) {
+                Double rate = rates.get(CurrencyRegistry.code(i));
+                perUsd[i] = rate == null || rate <= 0 ? Double.NaN : rate;
+            }
+            double[] crossRates = new double[n * n];
+            for (int from = 0; from < n; from++) {
+                for (int to = 0; to < n; to++) {
+                    crossRates[from * n + to] = perUsd[to] / perUsd[from];
+                }
+            }
+            return new RateSnapshot(version, Map.copyOf(rates), fetchedAt, source, crossRates);
+        }
+
+        /**
+        Units of to per unit of from.
+         */
+        public double crossRate(String from, String to) {
+            int fromOrdinal = CurrencyRegistry.ordinal(from);
+            int toOrdinal = CurrencyRegistry.ordinal(to);
+            double rate = fromOrdinal < 0 || toOrdinal < 0
+                    ? Double.NaN
+                    : crossRates[fromOrdinal * CurrencyRegistry.size() + toOrdinal];
+            if (Double.isNaN(rate)) {
+                throw new IllegalArgumentException("No exchange rate from " + from + " to " + to + " in snapshot v" + version);
+            }
+            return rate;
+        }
+    }
+
+    //what is written to fx.snapshot.path; the cross-rate matrix is rebuilt on load
+    record PersistedSnapshot(long version, Map<String, Double> rates, Instant fetchedAt, String source) {}
+
+    private final RateProvider rateProvider;
+    private final ExchangeRateHistoryStore historyStore;
+    private final ObjectMapper objectMapper;
+
+    //written only by the rate refresh, read lock-free by every request
+    private final AtomicReference<RateSnapshot> snapshot = new AtomicReference<>(RateSnapshot.EMPTY);
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile long lastAttemptMillis;
 
-    @Value("${currencyApi.apiKey}")
-    private String apiKey;
+    @Value("${fx.snapshot.path:data/fx-snapshot.json}")
+    private String snapshotPath;
 
-    public void getExchangeRate() {
-        String CURRENCY_API = "https://api.freecurrencyapi.com/v1/latest?apikey="; //https://api.currencyapi.com/v3/latest?apikey=
-        var response = restTemplate.getForEntity(CURRENCY_API + apiKey, JsonNode.class);
-        var data = Objects.requireNonNull(response.getBody()).get("data");
+    @Value("${fx.refresh.max-age-minutes:720}")
+    private long maxAgeMinutes;
 
-        for (var currency : CURRENCIES) {
-            rates.put(currency, data.get(currency).get("value").doubleValue());
+    @Value("${fx.refresh.retry-seconds:60}")
+    private long retrySeconds;
+
+    /**
+    Serves the last good snapshot from disk right away, so startup never waits on
+    the provider. Versions continue from the stored history to stay unique across restarts.
+     */
+    @PostConstruct
+    public void init() {
+        RateSnapshot initial = RateSnapshot.of(historyStore.lastVersion(), Map.of(), Instant.EPOCH, "none");
+        Path file = Path.of(snapshotPath);
+        if (Files.exists(file)) {
+            try {
+                PersistedSnapshot persisted = objectMapper.readValue(file.toFile(), PersistedSnapshot.class);
+                initial = RateSnapshot.of(Math.max(persisted.version(), historyStore.lastVersion()),
+                        persisted.rates(), persisted.fetchedAt(), persisted.source());
+                log.info("Loaded exchange rate snapshot v{} from {} fetched at {}", initial.version(), file, initial.fetchedAt());
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not load the persisted exchange rate snapshot {}", file, e);
+            }
+        }
+        snapshot.set(initial);
+    }
+
+    /**
+    Fetches rates from the provider and publishes them. Returns false without doing
+    anything when another refresh is already running.
+     */
+    public boolean refresh() throws Exception {
+        if (!refreshing.compareAndSet(false, true)) {
+            return false;
         }
+        try {
+            lastAttemptMillis = System.currentTimeMillis();
+            Map<String, Double> fetched = rateProvider.fetchRates();
+            if (fetched.isEmpty()) {
+                throw new IllegalStateException("Rate provider " + rateProvider.name() + " returned no rates");
+            }
 
-        System.out.println(rates);
+            RateSnapshot published = publish(fetched, rateProvider.name());
+            log.info("Published exchange rate snapshot v{} with {} currencies from {}",
+                    published.version(), published.rates().size(), published.source());
+            persist(published);
+            return true;
+        } finally {
+            refreshing.set(false);
+        }
     }
-}
 
+    /**
+    Swaps in a new snapshot built from the given rates and returns it.
+     */
+    public RateSnapshot publish(Map<String, Double> rates, String source) {
+        Instant fetchedAt = Instant.now();
+        RateSnapshot published = snapshot.updateAndGet(previous -> RateSnapshot.of(previous.version() + 1, rates, fetchedAt, source));
+        try {
+            historyStore.append(published);
+        } catch (RuntimeException e) {
+            log.error("Could not record rate snapshot v{} in the FX history", published.version(), e);
+        }
+        return published;
+    }
+
+    /**
+    The current snapshot; callers that need several rates should read it once and
+    use that instance throughout.
+    A stale snapshot is still returned (stale-while-revalidate) and triggers one
+    background refresh, at most every fx.refresh.retry-seconds.
+     */
+    public RateSnapshot getSnapshot() {
+        RateSnapshot current = snapshot.get();
+        long now = System.currentTimeMillis();
+        if (now - current.fetchedAt().toEpochMilli() > maxAgeMinutes * 60_000
+                && now - lastAttemptMillis > retrySeconds * 1000
+                && !refreshing.get()) {
+            revalidate();
+        }
+        return current;
+    }
+
+    public Map<String, Double> getRates() {
+        return getSnapshot().rates();
+    }
+
+    private void revalidate() {
+        lastAttemptMillis = System.currentTimeMillis();
+        Thread.ofVirtual().name("fx-revalidate").start(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                log.warn("Background exchange rate refresh failed, still serving snapshot v{}", snapshot.get().version(), e);
+            }
+        });
+    }
 
+    //Written to a temp file first so a crash never leaves a half-written snapshot behind
+    private void persist(RateSnapshot published) {
+        try {
+            Path file = Path.of(snapshotPath);
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            objectMapper.writeValue(temp.toFile(), new PersistedSnapshot(
+                    published.version(), published.rates(), published.fetchedAt(), published.source()));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Could not persist exchange rate snapshot v{}", published.version(), e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package lendrix.web.app.service;
+
+import java.io.InputStream;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+Reads rates from a JSON object of code to units per USD, e.g. {"USD": 1.0, "EUR": 0.92}.
+For offline development and tests (fx.provider=file).
+ */
+@Component
+@ConditionalOnProperty(name = "fx.provider", havingValue = "file")
+@RequiredArgsConstructor
+public class FileRateProvider implements RateProvider {
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+
+    @Value("${fx.provider.file:classpath:fx/fixture-rates.json}")
+    private String location;
+
+    @Override
+    public String name() {
+        return "file:" + location;
+    }
+
+    @Override
+    public Map<String, Double> fetchRates() throws Exception {
+        try (InputStream in = resourceLoader.getResource(location).getInputStream()) {
+            return objectMapper.readValue(in, new TypeReference<Map<String, Double>>() {});
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package lendrix.web.app.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+import lendrix.web.app.service.helper.HotAccountHelper;
+
+@Component
+public class HotAccountScheduleTaskRunnerComponent implements CommandLineRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(HotAccountScheduleTaskRunnerComponent.class);
+    private final HotAccountHelper hotAccountHelper;
+    private final ScheduledExecutorService scheduler;
+
+    public HotAccountScheduleTaskRunnerComponent(HotAccountHelper hotAccountHelper, ScheduledExecutorService scheduler) {
+        this.hotAccountHelper = hotAccountHelper;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        logger.info("Scheduling hot account slot consolidation");
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                hotAccountHelper.consolidate();
+            } catch (RuntimeException e) {
+                logger.error("Hot account slot consolidation failed", e);
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+}
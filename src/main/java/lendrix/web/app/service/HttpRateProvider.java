@@ -0,0 +1,48 @@
+package lendrix.web.app.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lendrix.web.app.util.CurrencyRegistry;
+import lombok.RequiredArgsConstructor;
+
+@Component
+@ConditionalOnProperty(name = "fx.provider", havingValue = "http", matchIfMissing = true)
+@RequiredArgsConstructor
+public class HttpRateProvider implements RateProvider {
+
+    private static final String CURRENCY_API = "https://api.freecurrencyapi.com/v1/latest?apikey="; //https://api.currencyapi.com/v3/latest?apikey=
+
+    private final RestTemplate restTemplate;
+
+    @Value("${currencyApi.apiKey}")
+    private String apiKey;
+
+    @Override
+    public String name() {
+        return "freecurrencyapi.com";
+    }
+
+    @Override
+    public Map<String, Double> fetchRates() {
+        var response = restTemplate.getForEntity(CURRENCY_API + apiKey, JsonNode.class);
+        var data = Objects.requireNonNull(response.getBody()).get("data");
+
+        Map<String, Double> rates = new HashMap<>();
+        for (var currency : CurrencyRegistry.codes()) {
+            JsonNode rate = data.get(currency);
+            if (rate != null) {
+                rates.put(currency, rate.get("value").doubleValue());
+            }
+        }
+        return rates;
+    }
+}
@@ -0,0 +1,221 @@
+package lendrix.web.app.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lendrix.web.app.entity.IdempotencyRecord;
+import lendrix.web.app.entity.Transaction;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.repository.IdempotencyRecordRepository;
+import lendrix.web.app.repository.TransactionRepository;
+import lendrix.web.app.util.ExpiringCache;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Makes money-moving requests safe to retry.
+The first request with a given Idempotency-Key runs; repeats get the stored
+Transaction back. Duplicates arriving while the first one still runs wait for it
+on this node, and are rejected with a conflict if it runs on another node.
+
+Every key is bound to a hash of the endpoint and the request body, and reusing a key
+with a different request is rejected. The key is marked completed in the same database
+transaction as the money movement, so a crash can never leave a committed transfer
+behind a key that still looks unfinished. Expiry is decided by the database clock only.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    /**
+    The key was already used for a different request (another endpoint or body).
+     */
+    public static class KeyReusedException extends IllegalArgumentException {
+        public KeyReusedException() {
+            super("This Idempotency-Key was already used for a different request");
+        }
+    }
+
+    private record Completed(String requestHash, Transaction transaction) {}
+
+    private record Running(String requestHash, CompletableFuture<Transaction> result) {}
+
+    //carries a checked exception of the call out of the transaction callback, rolling it back
+    private static class CallFailedException extends RuntimeException {
+        CallFailedException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExpiringCache<String, Completed> completed;
+    private final ConcurrentHashMap<String, Running> inFlight = new ConcurrentHashMap<>();
+    private final Duration ttl;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              TransactionRepository transactionRepository,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${idempotency.max-entries:10000}") int maxEntries) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.completed = new ExpiringCache<>(maxEntries, ttl);
+    }
+
+    @FunctionalInterface
+    public interface IdempotentCall {
+        Transaction call() throws Exception;
+    }
+
+    /**
+    Runs the call once per (user, endpoint, key). Without a key the call simply runs.
+    The call runs inside a transaction opened here, so whatever it locks and writes
+    commits together with the completed key.
+     */
+    public Transaction execute(User user, String endpoint, String idempotencyKey, Object request,
+                               IdempotentCall call) throws Exception {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return call.call();
+        }
+
+        String id = user.getUid() + ":" + endpoint + ":" + idempotencyKey;
+        String requestHash = requestHash(endpoint, request);
+
+        Completed cached = completed.get(id);
+        if (cached != null) {
+            checkSameRequest(cached.requestHash(), requestHash);
+            return cached.transaction();
+        }
+
+        Running mine = new Running(requestHash, new CompletableFuture<>());
+        Running running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            checkSameRequest(running.requestHash(), requestHash);
+            return await(running.result());
+        }
+
+        try {
+            Transaction transaction = executeOnce(id, requestHash, call);
+            mine.result().complete(transaction);
+            return transaction;
+        } catch (Exception e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    private Transaction executeOnce(String id, String requestHash, IdempotentCall call) throws Exception {
+        if (idempotencyRecordRepository.claim(id, requestHash) == 0) {
+            Optional<Transaction> previous = previousResult(id, requestHash);
+            if (previous.isPresent()) {
+                return previous.get();
+            }
+        }
+
+        Transaction transaction;
+        try {
+            transaction = transactionTemplate.execute(status -> {
+                Transaction result;
+                try {
+                    result = call.call();
+                } catch (Exception e) {
+                    throw new CallFailedException(e);
+                }
+                idempotencyRecordRepository.complete(id, result.getTxid());
+                return result;
+            });
+        } catch (CallFailedException e) {
+            //nothing was stored, let the client retry with the same key
+            idempotencyRecordRepository.deleteById(id);
+            throw (Exception) e.getCause();
+        } catch (RuntimeException e) {
+            idempotencyRecordRepository.deleteById(id);
+            throw e;
+        }
+
+        completed.put(id, new Completed(requestHash, transaction));
+        return transaction;
+    }
+
+    //The key is already taken: take over a record that has expired, or replay the stored result
+    private Optional<Transaction> previousResult(String id, String requestHash) {
+        if (idempotencyRecordRepository.takeOverExpired(id, requestHash, ttl.toSeconds()) == 1) {
+            return Optional.empty();
+        }
+
+        IdempotencyRecord record = idempotencyRecordRepository.findById(id).orElse(null);
+        if (record == null) {
+            //deleted by a failed first attempt since our claim
+            if (idempotencyRecordRepository.claim(id, requestHash) == 1) {
+                return Optional.empty();
+            }
+            throw new IllegalStateException("A request with this Idempotency-Key is already in progress");
+        }
+
+        checkSameRequest(record.getRequestHash(), requestHash);
+        if (record.getStatus() != Status.COMPLETED) {
+            throw new IllegalStateException("A request with this Idempotency-Key is already in progress");
+        }
+
+        Transaction transaction = transactionRepository.findById(record.getTransactionId())
+                .orElseThrow(() -> new IllegalStateException("Stored result for this Idempotency-Key no longer exists"));
+        completed.put(id, new Completed(requestHash, transaction));
+        log.info("Replayed idempotent request {}", id);
+        return Optional.of(transaction);
+    }
+
+    //records written before request hashes were kept have none and match any request
+    private static void checkSameRequest(String stored, String requestHash) {
+        if (stored != null && !stored.equals(requestHash)) {
+            throw new KeyReusedException();
+        }
+    }
+
+    private String requestHash(String endpoint, Object request) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(request);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(endpoint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            return HexFormat.of().formatHex(digest.digest(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request body cannot be hashed", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); //every JRE ships SHA-256
+        }
+    }
+
+    private Transaction await(CompletableFuture<Transaction> running) throws Exception {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package lendrix.web.app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import lendrix.web.app.entity.User;
+import lendrix.web.app.enums.NotificationChannel;
+
+/**
+Local stand-in provider (notifications.provider=in-memory): keeps every delivered
+notification in memory so tests and local runs can assert on what was sent.
+ */
+@Service
+@ConditionalOnProperty(name = "notifications.provider", havingValue = "in-memory")
+public class InMemoryNotificationService implements NotificationService {
+
+    public record SentNotification(NotificationChannel channel, String to, String subject, String body) {}
+
+    private final ConcurrentLinkedQueue<SentNotification> sent = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void sendEmail(String to, String subject, String body) {
+        sent.add(new SentNotification(NotificationChannel.EMAIL, to, subject, body));
+    }
+
+    @Override
+    public void sendSms(String to, String message) {
+        sent.add(new SentNotification(NotificationChannel.SMS, to, null, message));
+    }
+
+    @Override
+    public void sendInAppNotification(User user, String message) {
+        sent.add(new SentNotification(NotificationChannel.IN_APP, user.getUid(), null, message));
+    }
+
+    public List<SentNotification> getSent() {
+        return new ArrayList<>(sent);
+    }
+
+    public void clear() {
+        sent.clear();
+    }
+}
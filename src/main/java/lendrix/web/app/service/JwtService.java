@@ -1,6 +1,12 @@
 package lendrix.web.app.service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
 
 import javax.crypto.SecretKey;
 
@@ -8,20 +14,48 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lendrix.web.app.util.ExpiringCache;
 
+/**
+Issues and verifies the HMAC-signed access tokens.
+The key and the parser are built once (both are immutable and thread-safe), and tokens
+verified in the last token-cache ttl are remembered by their SHA-256, so a client
+sending the same token on every request pays for the signature check once per ttl.
+Raw tokens are never kept in memory.
+ */
 @Service
 public class JwtService {
-    
+
     @Value("${jwtSecret}")
     private String jwtSecret;
 
+    @Value("${auth.token-cache.ttl-seconds:30}")
+    private long tokenCacheTtlSeconds;
+
+    @Value("${auth.token-cache.max-entries:10000}")
+    private int tokenCacheMaxEntries;
+
     // Token validity: 24 hours
     private static final long EXPIRATION_TIME_MS = 1000 * 60 * 60 * 24;
 
+    private SecretKey key;
+    private JwtParser parser;
+    private ExpiringCache<String, Claims> verified;
+
+    @PostConstruct
+    public void init() {
+        key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        parser = Jwts.parser().verifyWith(key).build();
+        verified = new ExpiringCache<>(tokenCacheMaxEntries, Duration.ofSeconds(tokenCacheTtlSeconds));
+    }
+
     public SecretKey generateKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        return key;
     }
 
     public String generateToken(String username) {
@@ -32,16 +66,35 @@ public class JwtService {
                 .subject(username)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(generateKey())
+                .signWith(key)
                 .compact();
     }
 
+    /**
+    Claims of a token with a valid signature that has not expired, or null for any other
+    token. One parse per call at most, none when the token was verified recently.
+     */
+    public Claims verify(String token) {
+        String hash = sha256(token);
+        Claims claims = verified.get(hash);
+        if (claims == null) {
+            try {
+                claims = parser.parseSignedClaims(token).getPayload();
+            } catch (JwtException | IllegalArgumentException e) {
+                return null; //bad signature, malformed or expired
+            }
+            Date expiration = claims.getExpiration();
+            long ttlNanos = expiration == null ? Long.MAX_VALUE
+                    : TimeUnit.MILLISECONDS.toNanos(expiration.getTime() - System.currentTimeMillis());
+            verified.put(hash, claims, ttlNanos);
+        }
+        //a cached token can expire while cached
+        Date expiration = claims.getExpiration();
+        return expiration == null || new Date().before(expiration) ? claims : null;
+    }
+
     public Claims extractClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(generateKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     public String extractSubject(String token) {
@@ -49,11 +102,18 @@ public class JwtService {
     }
 
     public boolean isTokenValid(String token) {
-        return new Date().before(extractExpiration(token));
+        return verify(token) != null;
     }
 
     public Date extractExpiration(String token) {
         return extractClaims(token).getExpiration();
     }
-}
 
+    private static String sha256(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); //every JRE ships SHA-256
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package lendrix.web.app.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class LedgerCheckpointScheduleTaskRunnerComponent implements CommandLineRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(LedgerCheckpointScheduleTaskRunnerComponent.class);
+    private final LedgerService ledgerService;
+    private final ScheduledExecutorService scheduler;
+
+    public LedgerCheckpointScheduleTaskRunnerComponent(LedgerService ledgerService, ScheduledExecutorService scheduler) {
+        this.ledgerService = ledgerService;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        logger.info("Scheduling ledger checkpoint compaction");
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                ledgerService.compactCheckpoints();
+            } catch (RuntimeException e) {
+                //an uncaught exception would cancel the schedule
+                logger.error("Ledger checkpoint compaction failed", e);
+            }
+        }, 10, 10, TimeUnit.MINUTES);
+    }
+}
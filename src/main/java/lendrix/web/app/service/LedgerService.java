@@ -0,0 +1,314 @@
+package lendrix.web.app.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.LockModeType;
+import lendrix.web.app.entity.Account;
+import lendrix.web.app.entity.BalanceCheckpoint;
+import lendrix.web.app.entity.Card;
+import lendrix.web.app.entity.LedgerEntry;
+import lendrix.web.app.enums.EntrySide;
+import lendrix.web.app.repository.AccountRepository;
+import lendrix.web.app.repository.BalanceCheckpointRepository;
+import lendrix.web.app.repository.CardRepository;
+import lendrix.web.app.repository.LedgerEntryRepository;
+import lendrix.web.app.service.helper.AccountLockManager;
+import lendrix.web.app.service.helper.HotAccountHelper;
+import lendrix.web.app.util.Money;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Append-only double-entry journal.
+Every money movement is written as balanced debit/credit entries in one batch,
+and the balance of a ledger account is its checkpoint plus the entries after it.
+
+Balances are read from the journal: account listings and the funds check of every debit
+use checkpoint plus postings. Account.balance and Card.balance are still written in the
+same transaction as a copy of it, and the account row lock still serializes the debits of
+one account. Every ledger account is checkpointed: customer accounts and cards under their
+own lock, where drift from the stored copy is logged, and the multi-currency system
+accounts per currency.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerService {
+
+    public static final String EXTERNAL = "system:external"; //money entering or leaving the platform
+    public static final String FEES = "system:fees";
+    public static final String FX = "system:fx";             //currency position used by conversions
+    public static final String OPENING = "system:opening";   //opening balances and pre-ledger balances
+
+    private static final String SYSTEM_PREFIX = "system:";
+    private static final String CARD_PREFIX = "card:";
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceCheckpointRepository balanceCheckpointRepository;
+    private final AccountRepository accountRepository;
+    private final CardRepository cardRepository;
+    private final AccountLockManager accountLockManager;
+    private final HotAccountHelper hotAccountHelper;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile LocalDateTime lastCompaction = LocalDateTime.now().minusDays(1);
+
+    //last entry id seen by the previous compaction: every posting up to it has had a whole
+    //compaction interval to commit, so system accounts are checkpointed up to here
+    private volatile long settledEntryId;
+
+    public static String ledgerAccount(Account account) {
+        return account.getAccountid();
+    }
+
+    public static String ledgerAccount(Card card) {
+        return CARD_PREFIX + card.getCardid();
+    }
+
+    /**
+    Writes all entries of the journal in one insert batch.
+    Must run inside the transaction that changes the balances.
+     */
+    public void post(Journal journal) {
+        if (!journal.entries.isEmpty()) {
+            ledgerEntryRepository.saveAll(journal.entries);
+        }
+    }
+
+    /**
+    Current balance of a customer account or card ledger account: latest checkpoint plus
+    the entries posted after it.
+     */
+    public BigDecimal balanceOf(String ledgerAccount) {
+        Optional<BalanceCheckpoint> checkpoint = balanceCheckpointRepository.findById(ledgerAccount);
+        BigDecimal base = checkpoint.map(BalanceCheckpoint::getBalance).orElse(BigDecimal.ZERO);
+        long after = checkpoint.map(BalanceCheckpoint::getLastEntryId).orElse(0L);
+        return base.add(ledgerEntryRepository.sumPostedAfter(ledgerAccount, after));
+    }
+
+    /**
+    Balance of an account as the journal has it, credits waiting in hot-account slots included.
+    Under the account lock this is what a debit can spend: every posting that takes money out
+    of the account holds its row lock (transfers, conversions, card funding) or is version-checked
+    against it (card debits), so none can be in flight.
+     */
+    public Money balanceOf(Account account) {
+        return Money.of(balanceOf(ledgerAccount(account)), account.getCode(), RoundingMode.DOWN);
+    }
+
+    /**
+    Balances of several customer accounts or cards in two queries, for reads.
+     */
+    public Map<String, BigDecimal> balancesOf(Collection<String> ledgerAccounts) {
+        Map<String, BigDecimal> balances = new HashMap<>();
+        if (ledgerAccounts.isEmpty()) {
+            return balances;
+        }
+        for (String ledgerAccount : ledgerAccounts) {
+            balances.put(ledgerAccount, BigDecimal.ZERO);
+        }
+        for (BalanceCheckpoint checkpoint : balanceCheckpointRepository.findAllById(ledgerAccounts)) {
+            balances.put(checkpoint.getLedgerAccount(), checkpoint.getBalance());
+        }
+        for (Object[] row : ledgerEntryRepository.sumPostedAfterCheckpoints(ledgerAccounts)) {
+            balances.merge((String) row[0], (BigDecimal) row[1], BigDecimal::add);
+        }
+        return balances;
+    }
+
+    /**
+    Current balance of a system account in one currency.
+     */
+    public BigDecimal balanceOf(String ledgerAccount, String currency) {
+        Optional<BalanceCheckpoint> checkpoint = balanceCheckpointRepository.findById(systemCheckpointId(ledgerAccount, currency));
+        BigDecimal base = checkpoint.map(BalanceCheckpoint::getBalance).orElse(BigDecimal.ZERO);
+        long after = checkpoint.map(BalanceCheckpoint::getLastEntryId).orElse(0L);
+        return base.add(ledgerEntryRepository.sumPostedAfterInCurrency(ledgerAccount, currency, after));
+    }
+
+    /**
+    Moves the checkpoint of every ledger account posted to since the last run,
+    so balance reads only ever add up a short tail of entries.
+     */
+    public void compactCheckpoints() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long lastEntryId = ledgerEntryRepository.findLastEntryId();
+        //overlap with the previous run so entries committed late are not missed
+        List<String> touched = ledgerEntryRepository.findLedgerAccountsPostedSince(lastCompaction.minusMinutes(5));
+
+        int compacted = 0;
+        for (String ledgerAccount : touched) {
+            if (ledgerAccount.startsWith(SYSTEM_PREFIX)) {
+                //no lock keeps postings off a system account, so only settled entries are checkpointed
+                if (settledEntryId > 0 && checkpointSystem(ledgerAccount, settledEntryId)) {
+                    compacted++;
+                }
+            } else if (ledgerAccount.startsWith(CARD_PREFIX)) {
+                Optional<Card> card = cardRepository.findById(ledgerAccount.substring(CARD_PREFIX.length()));
+                if (card.isPresent()) {
+                    checkpoint(card.get());
+                    compacted++;
+                }
+            } else {
+                Optional<Account> account = accountRepository.findById(ledgerAccount);
+                if (account.isPresent()) {
+                    checkpoint(account.get());
+                    compacted++;
+                }
+            }
+        }
+
+        settledEntryId = lastEntryId;
+        lastCompaction = startedAt;
+        log.info("Compacted {} ledger checkpoints", compacted);
+    }
+
+    private void checkpoint(Account account) {
+        //under the account lock no locked posting to this account is in flight, and the forced
+        //version bump makes optimistic writers (card credit/debit) that read it earlier retry
+        accountLockManager.withLockedAccounts(List.of(account), LockModeType.PESSIMISTIC_FORCE_INCREMENT, locked -> {
+            Account current = locked.get(account.getAccountid());
+            if (current.isHot()) {
+                //slot credits skip the account lock; locking the slots waits out any still in flight
+                hotAccountHelper.sweep(current);
+            }
+            saveCheckpoint(ledgerAccount(current), current.getCode(), current.getBalance(),
+                    "account " + current.getAccountNumber());
+            return null;
+        });
+    }
+
+    private void checkpoint(Card card) {
+        //card credits and debits are optimistic: the forced version bump makes one that read
+        //the card before this lock fail and retry, and one holding the row commits first
+        transactionTemplate.executeWithoutResult(status -> cardRepository.lockById(card.getCardid()).ifPresent(current ->
+                saveCheckpoint(ledgerAccount(current), current.getCurrency(), current.getBalance(), "card " + current.getCardid())));
+    }
+
+    //Must run while nothing can post to the ledger account
+    private void saveCheckpoint(String ledgerAccount, String currency, BigDecimal storedBalance, String label) {
+        Optional<BalanceCheckpoint> previous = balanceCheckpointRepository.findById(ledgerAccount);
+
+        BigDecimal balance;
+        if (previous.isPresent()) {
+            balance = previous.get().getBalance()
+                    .add(ledgerEntryRepository.sumPostedAfter(ledgerAccount, previous.get().getLastEntryId()));
+            if (balance.compareTo(storedBalance) != 0) {
+                log.warn("Ledger balance {} of {} differs from stored balance {}", balance, label, storedBalance);
+            }
+        } else {
+            //first checkpoint: bring balances from before the ledger existed into the journal
+            BigDecimal difference = storedBalance.subtract(ledgerEntryRepository.sumPostedAfter(ledgerAccount, 0));
+            post(new Journal().move(currency, OPENING, ledgerAccount, difference));
+            balance = storedBalance;
+        }
+
+        balanceCheckpointRepository.save(BalanceCheckpoint.builder()
+                .ledgerAccount(ledgerAccount)
+                .currency(currency)
+                .balance(balance)
+                .lastEntryId(ledgerEntryRepository.findLastEntryId(ledgerAccount))
+                .build());
+    }
+
+    //One checkpoint per currency, all moved together up to upToEntryId. Returns false if already there
+    private boolean checkpointSystem(String ledgerAccount, long upToEntryId) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            Map<String, BigDecimal> balances = new TreeMap<>();
+            long after = Long.MAX_VALUE;
+            for (BalanceCheckpoint previous : balanceCheckpointRepository.findByLedgerAccountStartingWith(ledgerAccount + "/")) {
+                balances.put(previous.getCurrency(), previous.getBalance());
+                after = Math.min(after, previous.getLastEntryId());
+            }
+            after = balances.isEmpty() ? 0 : after;
+            if (after >= upToEntryId) {
+                return false;
+            }
+
+            for (Object[] row : ledgerEntryRepository.sumPostedBetweenByCurrency(ledgerAccount, after, upToEntryId)) {
+                balances.merge((String) row[0], (BigDecimal) row[1], BigDecimal::add);
+            }
+            balances.forEach((currency, balance) -> balanceCheckpointRepository.save(BalanceCheckpoint.builder()
+                    .ledgerAccount(systemCheckpointId(ledgerAccount, currency))
+                    .currency(currency)
+                    .balance(balance)
+                    .lastEntryId(upToEntryId)
+                    .build()));
+            return true;
+        }));
+    }
+
+    private static String systemCheckpointId(String ledgerAccount, String currency) {
+        return ledgerAccount + "/" + currency;
+    }
+
+    /**
+    Entries of one money movement. Every move adds a debit and a matching credit,
+    so a journal always balances per currency.
+     */
+    public static class Journal {
+
+        private final String journalId = UUID.randomUUID().toString();
+        private final List<LedgerEntry> entries = new ArrayList<>();
+
+        public Journal move(String currency, String from, String to, BigDecimal amount) {
+            int sign = amount.signum();
+            if (sign == 0) {
+                return this;
+            }
+            if (sign < 0) {
+                return move(currency, to, from, amount.negate());
+            }
+            entries.add(entry(currency, from, EntrySide.DEBIT, amount));
+            entries.add(entry(currency, to, EntrySide.CREDIT, amount));
+            return this;
+        }
+
+        public Journal move(String from, String to, Money amount) {
+            return move(amount.getCurrency(), from, to, amount.toBigDecimal());
+        }
+
+        /**
+        Moves value across currencies through the FX position, which keeps each currency balanced.
+         */
+        public Journal exchange(String from, Money debited, String to, Money credited) {
+            return exchange(debited.getCurrency(), from, debited.toBigDecimal(), credited.getCurrency(), to, credited.toBigDecimal());
+        }
+
+        public Journal exchange(String fromCurrency, String from, BigDecimal debited,
+                                String toCurrency, String to, BigDecimal credited) {
+            if (fromCurrency.equals(toCurrency) && debited.compareTo(credited) == 0) {
+                return move(fromCurrency, from, to, debited);
+            }
+            move(fromCurrency, from, FX, debited);
+            return move(toCurrency, FX, to, credited);
+        }
+
+        public List<LedgerEntry> getEntries() {
+            return List.copyOf(entries);
+        }
+
+        private LedgerEntry entry(String currency, String ledgerAccount, EntrySide side, BigDecimal amount) {
+            return LedgerEntry.builder()
+                    .journalId(journalId)
+                    .ledgerAccount(ledgerAccount)
+                    .currency(currency)
+                    .side(side)
+                    .amount(amount)
+                    .build();
+        }
+    }
+}
@@ -6,7 +6,9 @@ import java.util.List;
 
 import javax.naming.OperationNotSupportedException;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import lendrix.web.app.entity.Account;
 import lendrix.web.app.entity.MoneyRequest;
@@ -25,11 +27,19 @@ public class MoneyRequestService {
     private final UserRepository userRepository;
     private final AccountRepository accountRepository;
     private final AccountHelper accountHelper;
+    private final NotificationOutboxService notificationOutboxService;
 
-    public MoneyRequest requestMoney(String requesterUsername, String recipientUsername, BigDecimal amount) {
+    //When on, approvals are parked as SETTLING and settled net by MoneyRequestSettlementService
+    @Value("${money-requests.netting.enabled:false}")
+    private boolean nettingEnabled;
+
+    @Transactional
+    public MoneyRequest requestMoney(String requesterUsername, String recipientUsername, BigDecimal amount, String currency) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Amount must be greater than 0");
         }
+        String code = currency == null || currency.isBlank() ? MoneyRequest.DEFAULT_CURRENCY : currency;
+        accountHelper.toMoney(amount, code); // rejects amounts finer than the currency's minor unit
 
         User requester = userRepository.findByUsername(requesterUsername)
                 .orElseThrow(() -> new RuntimeException("Requester not found: " + requesterUsername));
@@ -41,13 +51,19 @@ public class MoneyRequestService {
                 .requester(requester)
                 .recipient(recipient)
                 .amount(amount)
+                .currency(code)
                 .status("PENDING")
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        return moneyRequestRepository.save(request);
+        request = moneyRequestRepository.save(request);
+        notificationOutboxService.enqueueInApp(recipient,
+                requester.getUsername() + " requested " + amount + " " + code + " from you");
+        return request;
     }
 
+    //The status change, the transfer and the notifications commit together
+    @Transactional(rollbackFor = Exception.class)
     public MoneyRequest respondToRequest(String requestId, boolean approve) throws OperationNotSupportedException {
         MoneyRequest request = moneyRequestRepository.findById(requestId)
                 .orElseThrow(() -> new RuntimeException("Money request not found"));
@@ -56,11 +72,25 @@ public class MoneyRequestService {
             throw new IllegalArgumentException("This request has already been processed");
         }
 
-        if (approve) {
+        String outcome;
+        if (approve && nettingEnabled) {
+            findSettlementAccounts(request);
+            request.setStatus("SETTLING");
+            outcome = "approved";
+        } else if (approve) {
             handleApprovedRequest(request);
             request.setStatus("APPROVED");
+            outcome = "approved";
         } else {
             request.setStatus("REJECTED");
+            outcome = "rejected";
+        }
+
+        String message = "Your request for " + request.getAmount() + " " + request.getCurrencyOrDefault() + " from "
+                + request.getRecipient().getUsername() + " was " + outcome;
+        notificationOutboxService.enqueueInApp(request.getRequester(), message);
+        if (request.getRequester().getEmail() != null) {
+            notificationOutboxService.enqueueEmail(request.getRequester().getEmail(), "Money request " + outcome, message);
         }
 
         return moneyRequestRepository.save(request);
@@ -69,20 +99,26 @@ public class MoneyRequestService {
     private void handleApprovedRequest(MoneyRequest request) throws OperationNotSupportedException {
         BigDecimal amount = request.getAmount();
         User recipient = request.getRecipient();  // the one paying
-        User requester = request.getRequester();  // the one receiving
-
-        //Assume all requests use USD for now
-        Account recipientAccount = accountRepository.findByCodeAndOwnerUid("USD", recipient.getUid())
-                .orElseThrow(() -> new IllegalArgumentException("Recipient has no USD account"));
-
-        Account requesterAccount = accountRepository.findByCodeAndOwnerUid("USD", requester.getUid())
-                .orElseThrow(() -> new IllegalArgumentException("Requester has no USD account"));
+        Account[] accounts = findSettlementAccounts(request);
 
         // Validate funds before transfer
-        accountHelper.validateSufficientFunds(recipientAccount, amount);
+        accountHelper.validateSufficientFunds(accounts[0], amount);
 
         // Use AccountHelper to move the money & log transactions
-        accountHelper.performTransfer(recipientAccount, requesterAccount, amount, recipient);
+        accountHelper.performTransfer(accounts[0], accounts[1], amount, recipient);
+    }
+
+    //Returns the paying (recipient) and receiving (requester) accounts in the request currency
+    private Account[] findSettlementAccounts(MoneyRequest request) {
+        String code = request.getCurrencyOrDefault();
+
+        Account recipientAccount = accountRepository.findByCodeAndOwnerUid(code, request.getRecipient().getUid())
+                .orElseThrow(() -> new IllegalArgumentException("Recipient has no " + code + " account"));
+
+        Account requesterAccount = accountRepository.findByCodeAndOwnerUid(code, request.getRequester().getUid())
+                .orElseThrow(() -> new IllegalArgumentException("Requester has no " + code + " account"));
+
+        return new Account[] { recipientAccount, requesterAccount };
     }
 
     public List<MoneyRequest> getRequestsForUser(String username) {
@@ -0,0 +1,44 @@
+package lendrix.web.app.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class MoneyRequestSettlementScheduleTaskRunnerComponent implements CommandLineRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(MoneyRequestSettlementScheduleTaskRunnerComponent.class);
+    private final MoneyRequestSettlementService moneyRequestSettlementService;
+    private final ScheduledExecutorService scheduler;
+
+    @Value("${money-requests.netting.enabled:false}")
+    private boolean enabled;
+
+    @Value("${money-requests.netting.interval-seconds:60}")
+    private long intervalSeconds;
+
+    public MoneyRequestSettlementScheduleTaskRunnerComponent(MoneyRequestSettlementService moneyRequestSettlementService, ScheduledExecutorService scheduler) {
+        this.moneyRequestSettlementService = moneyRequestSettlementService;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (!enabled) {
+            return;
+        }
+        logger.info("Scheduling money request netting settlement every {}s", intervalSeconds);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                moneyRequestSettlementService.settle();
+            } catch (RuntimeException e) {
+                logger.error("Money request settlement failed", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,177 @@
+package lendrix.web.app.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lendrix.web.app.entity.Account;
+import lendrix.web.app.entity.MoneyRequest;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.repository.AccountRepository;
+import lendrix.web.app.repository.MoneyRequestRepository;
+import lendrix.web.app.service.helper.AccountHelper;
+import lendrix.web.app.service.helper.AccountLockManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Netting settlement for approved money requests (money-requests.netting.enabled).
+Requests waiting in SETTLING are grouped per currency and per pair of users; the
+amounts owed in each direction cancel out and only one net transfer per group is
+applied, all groups in a single transaction.
+The 1% transfer fee is charged on the net amount.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MoneyRequestSettlementService {
+
+    private final MoneyRequestRepository moneyRequestRepository;
+    private final AccountRepository accountRepository;
+    private final AccountHelper accountHelper;
+    private final AccountLockManager accountLockManager;
+    private final NotificationOutboxService notificationOutboxService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${money-requests.netting.batch-size:5000}")
+    private int batchSize;
+
+    //Users are ordered by uid so A->B and B->A requests land in the same group
+    private record PairKey(String currency, String firstUid, String secondUid) {}
+
+    private static class NetPosition {
+        private User first;
+        private User second;
+        private BigDecimal owedByFirst = BigDecimal.ZERO; //negative when the second user owes
+        private final List<MoneyRequest> requests = new ArrayList<>();
+    }
+
+    /**
+    Settles one batch of SETTLING requests and returns how many were processed.
+     */
+    public int settle() {
+        Integer settled = transactionTemplate.execute(status -> {
+            List<MoneyRequest> pending = moneyRequestRepository.findByStatusOrderByCreatedAt("SETTLING", Limit.of(batchSize));
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            long startedAt = System.nanoTime();
+
+            Map<PairKey, NetPosition> positions = net(pending);
+            Map<String, Account> accountsByOwnerAndCode = loadAccounts(positions.values());
+
+            // Resolve both accounts of every group before taking any lock
+            Map<PairKey, Account[]> settlementAccounts = new HashMap<>();
+            Map<String, Account> involved = new HashMap<>();
+            int transfers = 0;
+            for (Map.Entry<PairKey, NetPosition> entry : positions.entrySet()) {
+                NetPosition position = entry.getValue();
+                int direction = position.owedByFirst.signum();
+                if (direction == 0) {
+                    continue;
+                }
+                User payer = direction > 0 ? position.first : position.second;
+                User payee = direction > 0 ? position.second : position.first;
+                Account from = accountsByOwnerAndCode.get(payer.getUid() + ":" + entry.getKey().currency());
+                Account to = accountsByOwnerAndCode.get(payee.getUid() + ":" + entry.getKey().currency());
+                if (from == null || to == null) {
+                    fail(position, "no " + entry.getKey().currency() + " account to settle with");
+                    continue;
+                }
+                settlementAccounts.put(entry.getKey(), new Account[] { from, to });
+                for (Account account : accountHelper.accountsToLock(from, to)) {
+                    involved.putIfAbsent(account.getAccountid(), account);
+                }
+                transfers++;
+            }
+
+            // Joins the surrounding transaction: the row locks are held until the request updates commit
+            if (!involved.isEmpty()) {
+                accountLockManager.withLockedAccounts(involved.values(), locked -> {
+                    settlementAccounts.forEach((key, accounts) -> {
+                        NetPosition position = positions.get(key);
+                        Account from = locked.get(accounts[0].getAccountid());
+                        Account to = locked.getOrDefault(accounts[1].getAccountid(), accounts[1]);
+                        try {
+                            accountHelper.applyTransfer(from, to, position.owedByFirst.abs(), from.getOwner());
+                        } catch (IllegalArgumentException | IllegalStateException e) {
+                            //short funds, a spending limit or a hot receiver that left hot mode:
+                            //applyTransfer failed before moving any money, so only this group fails
+                            fail(position, e.getMessage());
+                        }
+                    });
+                    return null;
+                });
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            for (MoneyRequest request : pending) {
+                if ("SETTLING".equals(request.getStatus())) {
+                    request.setStatus("APPROVED");
+                    request.setSettledAt(now);
+                }
+            }
+            moneyRequestRepository.saveAll(pending);
+
+            double seconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+            log.info("Settled {} money requests with {} net transfers in {}s", pending.size(), transfers, String.format("%.3f", seconds));
+            return pending.size();
+        });
+        return settled == null ? 0 : settled;
+    }
+
+    private Map<PairKey, NetPosition> net(List<MoneyRequest> requests) {
+        Map<PairKey, NetPosition> positions = new LinkedHashMap<>();
+        for (MoneyRequest request : requests) {
+            User payer = request.getRecipient();
+            User payee = request.getRequester();
+            boolean payerFirst = payer.getUid().compareTo(payee.getUid()) < 0;
+            User first = payerFirst ? payer : payee;
+            User second = payerFirst ? payee : payer;
+
+            NetPosition position = positions.computeIfAbsent(
+                    new PairKey(request.getCurrencyOrDefault(), first.getUid(), second.getUid()), key -> new NetPosition());
+            position.first = first;
+            position.second = second;
+            position.owedByFirst = payerFirst
+                    ? position.owedByFirst.add(request.getAmount())
+                    : position.owedByFirst.subtract(request.getAmount());
+            position.requests.add(request);
+        }
+        return positions;
+    }
+
+    //One query for every account of every user involved, keyed by "uid:code"
+    private Map<String, Account> loadAccounts(Iterable<NetPosition> positions) {
+        Set<String> uids = new HashSet<>();
+        for (NetPosition position : positions) {
+            uids.add(position.first.getUid());
+            uids.add(position.second.getUid());
+        }
+        Map<String, Account> accounts = new HashMap<>();
+        for (Account account : accountRepository.findAllByOwnerUidIn(uids)) {
+            accounts.put(account.getOwner().getUid() + ":" + account.getCode(), account);
+        }
+        return accounts;
+    }
+
+    private void fail(NetPosition position, String reason) {
+        for (MoneyRequest request : position.requests) {
+            request.setStatus("FAILED");
+            notificationOutboxService.enqueueInApp(request.getRequester(),
+                    "Your request for " + request.getAmount() + " " + request.getCurrencyOrDefault() + " from "
+                            + request.getRecipient().getUsername() + " could not be settled: " + reason);
+        }
+    }
+}
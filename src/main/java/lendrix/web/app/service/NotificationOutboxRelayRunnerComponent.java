@@ -0,0 +1,49 @@
+package lendrix.web.app.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class NotificationOutboxRelayRunnerComponent implements CommandLineRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(NotificationOutboxRelayRunnerComponent.class);
+    private final NotificationOutboxService notificationOutboxService;
+    private final ScheduledExecutorService scheduler;
+
+    @Value("${notifications.outbox.relay-enabled:true}")
+    private boolean enabled;
+
+    @Value("${notifications.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    public NotificationOutboxRelayRunnerComponent(NotificationOutboxService notificationOutboxService, ScheduledExecutorService scheduler) {
+        this.notificationOutboxService = notificationOutboxService;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (!enabled) {
+            logger.info("Notification outbox relay is disabled");
+            return;
+        }
+        logger.info("Scheduling notification outbox relay");
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                //keep draining until nothing is due
+                int relayed;
+                do {
+                    relayed = notificationOutboxService.relay();
+                } while (relayed > 0);
+            } catch (RuntimeException e) {
+                logger.error("Notification outbox relay failed", e);
+            }
+        }, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+}
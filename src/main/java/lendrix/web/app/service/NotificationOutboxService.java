@@ -0,0 +1,155 @@
+package lendrix.web.app.service;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lendrix.web.app.entity.OutboxNotification;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.enums.NotificationChannel;
+import lendrix.web.app.enums.OutboxStatus;
+import lendrix.web.app.repository.OutboxNotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Transactional outbox in front of NotificationService.
+Callers enqueue inside the transaction that changes the money, so a notification
+exists if and only if the change committed; the relay delivers it afterwards,
+keeping provider latency out of the request path.
+
+The relay never holds a transaction or a row lock while talking to a provider: it claims
+a batch by leasing it (pushing nextAttemptAt past the claim window) and commits, sends,
+then writes the outcomes in a second short transaction. A relay that dies mid-batch
+leaves its rows to be picked up again once the lease runs out, so delivery is at least once.
+ */
+@Service
+@Slf4j
+public class NotificationOutboxService {
+
+    private final OutboxNotificationRepository outboxRepository;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${notifications.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${notifications.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${notifications.outbox.retry-delay-seconds:5}")
+    private long retryDelaySeconds;
+
+    @Value("${notifications.outbox.claim-seconds:60}")
+    private long claimSeconds;
+
+    public NotificationOutboxService(OutboxNotificationRepository outboxRepository,
+                                     NotificationService notificationService,
+                                     TransactionTemplate transactionTemplate,
+                                     MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.notificationService = notificationService;
+        this.transactionTemplate = transactionTemplate;
+
+        Gauge.builder("notifications.outbox.pending", outboxRepository,
+                        repository -> repository.countByStatus(OutboxStatus.PENDING))
+                .description("Notifications waiting to be delivered")
+                .register(meterRegistry);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueEmail(String to, String subject, String body) {
+        enqueue(OutboxNotification.builder().channel(NotificationChannel.EMAIL).recipient(to).subject(subject).body(body));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueSms(String to, String message) {
+        enqueue(OutboxNotification.builder().channel(NotificationChannel.SMS).recipient(to).body(message));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueInApp(User user, String message) {
+        enqueue(OutboxNotification.builder().channel(NotificationChannel.IN_APP).user(user).body(message));
+    }
+
+    private void enqueue(OutboxNotification.OutboxNotificationBuilder notification) {
+        outboxRepository.save(notification
+                .status(OutboxStatus.PENDING)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+    Delivers one batch of due notifications and returns how many were claimed.
+     */
+    public int relay() {
+        List<OutboxNotification> claimed = claim();
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        Map<NotificationChannel, List<OutboxNotification>> byChannel = claimed.stream()
+                .collect(Collectors.groupingBy(OutboxNotification::getChannel,
+                        () -> new EnumMap<>(NotificationChannel.class), Collectors.toList()));
+        byChannel.forEach(this::dispatch);
+
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.saveAll(claimed));
+        return claimed.size();
+    }
+
+    //Locks due rows (SKIP LOCKED for other relays) just long enough to lease them to this relay
+    private List<OutboxNotification> claim() {
+        List<OutboxNotification> claimed = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxNotification> due = outboxRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByCreatedAt(
+                    OutboxStatus.PENDING, now, Limit.of(batchSize));
+            due.forEach(notification -> notification.setNextAttemptAt(now.plusSeconds(claimSeconds)));
+            return outboxRepository.saveAll(due);
+        });
+        return claimed == null ? List.of() : claimed;
+    }
+
+    private void dispatch(NotificationChannel channel, List<OutboxNotification> notifications) {
+        for (OutboxNotification notification : notifications) {
+            try {
+                switch (channel) {
+                    case EMAIL -> notificationService.sendEmail(notification.getRecipient(), notification.getSubject(), notification.getBody());
+                    case SMS -> notificationService.sendSms(notification.getRecipient(), notification.getBody());
+                    case IN_APP -> notificationService.sendInAppNotification(notification.getUser(), notification.getBody());
+                }
+                notification.setStatus(OutboxStatus.SENT);
+                notification.setSentAt(LocalDateTime.now());
+                notification.setLastError(null);
+            } catch (RuntimeException e) {
+                scheduleRetry(notification, e);
+            }
+        }
+    }
+
+    //Exponential backoff; after maxAttempts the notification is parked as FAILED
+    private void scheduleRetry(OutboxNotification notification, RuntimeException error) {
+        int attempts = notification.getAttempts() + 1;
+        notification.setAttempts(attempts);
+        notification.setLastError(error.getMessage());
+
+        if (attempts >= maxAttempts) {
+            notification.setStatus(OutboxStatus.FAILED);
+            log.error("Giving up on {} notification {} after {} attempts", notification.getChannel(), notification.getId(), attempts, error);
+            return;
+        }
+        long delaySeconds = retryDelaySeconds << Math.min(attempts - 1, 10);
+        notification.setNextAttemptAt(LocalDateTime.now().plusSeconds(delaySeconds));
+        log.warn("Delivering {} notification {} failed (attempt {}), retrying in {}s",
+                notification.getChannel(), notification.getId(), attempts, delaySeconds);
+    }
+}
@@ -1,10 +1,12 @@
 package lendrix.web.app.service;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import lendrix.web.app.entity.User;
 
 @Service
+@ConditionalOnProperty(name = "notifications.provider", havingValue = "console", matchIfMissing = true)
 public class NotificationServiceImpl implements NotificationService {
     @Override
     public void sendEmail(String to, String subject, String body) {
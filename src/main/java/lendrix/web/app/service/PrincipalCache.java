@@ -0,0 +1,83 @@
+package lendrix.web.app.service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.util.ExpiringCache;
+
+/**
+Users already authenticated by a token, so a request with a known token skips the user
+query. Entries are keyed by subject and the token's issue time, live at most ttl-seconds
+and never past the token's expiry.
+Changing a user (roles, password, anything) revokes every cached entry of that user:
+the change time is remembered for one ttl and entries cached before it count as misses.
+ */
+@Component
+public class PrincipalCache {
+
+    private record Cached(User user, long cachedAt) {}
+
+    private final ExpiringCache<String, Cached> principals;
+    private final ExpiringCache<String, Long> revocations;
+    private final Counter hits;
+    private final Counter misses;
+
+    public PrincipalCache(@Value("${auth.principal-cache.ttl-seconds:60}") long ttlSeconds,
+                          @Value("${auth.principal-cache.max-entries:10000}") int maxEntries,
+                          MeterRegistry meterRegistry) {
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.principals = new ExpiringCache<>(maxEntries, ttl);
+        this.revocations = new ExpiringCache<>(maxEntries, ttl);
+        this.hits = Counter.builder("auth.principal.cache").tag("result", "hit")
+                .description("Authenticated requests served from the principal cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("auth.principal.cache").tag("result", "miss")
+                .description("Authenticated requests that loaded the user")
+                .register(meterRegistry);
+        Gauge.builder("auth.principal.cache.size", principals, ExpiringCache::size)
+                .description("Cached principals, including expired ones not evicted yet")
+                .register(meterRegistry);
+    }
+
+    /**
+    The cached user for the token, or the user returned by loader (cached unless null).
+     */
+    public User get(String subject, Date issuedAt, Date expiresAt, Function<String, User> loader) {
+        String username = subject.toLowerCase(Locale.ROOT); //usernames are looked up case-insensitively
+        String key = username + ":" + (issuedAt == null ? 0 : issuedAt.getTime());
+        Cached cached = principals.get(key);
+        Long revokedAt = revocations.get(username);
+        if (cached != null && (revokedAt == null || cached.cachedAt() - revokedAt > 0)) {
+            hits.increment();
+            return cached.user();
+        }
+        misses.increment();
+        long loadedAt = System.nanoTime();
+        User user = loader.apply(subject);
+        if (user != null) {
+            long ttlNanos = expiresAt == null ? Long.MAX_VALUE
+                    : TimeUnit.MILLISECONDS.toNanos(expiresAt.getTime() - System.currentTimeMillis());
+            if (ttlNanos > 0) {
+                principals.put(key, new Cached(user, loadedAt), ttlNanos);
+            }
+        }
+        return user;
+    }
+
+    //Entries of the user cached before now are ignored from here on
+    public void invalidate(String username) {
+        if (username != null) {
+            revocations.put(username.toLowerCase(Locale.ROOT), System.nanoTime());
+        }
+    }
+}
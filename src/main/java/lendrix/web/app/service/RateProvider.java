@@ -0,0 +1,20 @@
+package lendrix.web.app.service;
+
+import java.util.Map;
+
+/**
+Source of exchange rates for ExchangeRateService, selected with fx.provider.
+ */
+public interface RateProvider {
+
+    /**
+    Short name recorded as the source of the snapshots built from this provider.
+     */
+    String name();
+
+    /**
+    Current rates as units per USD, keyed by currency code. Currencies the
+    provider does not know may be left out.
+     */
+    Map<String, Double> fetchRates() throws Exception;
+}
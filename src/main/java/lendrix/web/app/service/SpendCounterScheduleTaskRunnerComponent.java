@@ -0,0 +1,34 @@
+package lendrix.web.app.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SpendCounterScheduleTaskRunnerComponent implements CommandLineRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(SpendCounterScheduleTaskRunnerComponent.class);
+    private final SpendCounterService spendCounterService;
+    private final ScheduledExecutorService scheduler;
+
+    public SpendCounterScheduleTaskRunnerComponent(SpendCounterService spendCounterService, ScheduledExecutorService scheduler) {
+        this.spendCounterService = spendCounterService;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        logger.info("Scheduling spend counter trimming");
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                spendCounterService.trim();
+            } catch (RuntimeException e) {
+                logger.error("Spend counter trimming failed", e);
+            }
+        }, 15, 15, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,204 @@
+package lendrix.web.app.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lendrix.web.app.entity.SpendBucket;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.repository.SpendBucketRepository;
+import lendrix.web.app.util.Money;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Rolling per-user totals of money transferred out, kept as hourly buckets.
+Each transfer adds to its hour in spend_buckets inside the transfer's transaction and,
+once that commits, raises the same bucket in an in-memory ring of the last week.
+A limit check sums at most 168 slots of the ring and only queries the table the first
+time a user is seen (or after the ring was trimmed as idle).
+
+The ring only ever takes the bucket total returned by the upsert and keeps the larger
+value, so a commit racing with a load from the table is never counted twice.
+The window is hour-aligned: "last 24 hours" covers the current hour plus the 23 before it.
+
+Amounts are kept in the limits' reference currency, converted at the current rate snapshot.
+The limits are enforced by record itself: the user's current bucket is locked first, so
+concurrent transfers of one user are checked one after another against the committed total.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SpendCounterService {
+
+    public static final int DAY_HOURS = 24;
+    public static final int WEEK_HOURS = 168;
+
+    public static final BigDecimal DAILY_LIMIT = new BigDecimal("2000.00");
+    public static final BigDecimal WEEKLY_LIMIT = new BigDecimal("10000.00");
+
+    /**
+    A transfer that would take the user past the daily or weekly limit.
+     */
+    public static class LimitExceededException extends IllegalArgumentException {
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    private final SpendBucketRepository spendBucketRepository;
+    private final ExchangeRateService exchangeRateService;
+    private final Map<String, SpendWindow> windows = new ConcurrentHashMap<>();
+
+    @Value("${limits.spend.max-cached-users:100000}")
+    private int maxCachedUsers;
+
+    @Value("${limits.spend.idle-minutes:60}")
+    private long idleMinutes;
+
+    @Value("${limits.spend.currency:USD}")
+    private String referenceCurrency;
+
+    /**
+    Adds a transfer out of the user's accounts to the current hour, or throws
+    LimitExceededException without adding anything if it would exceed a limit.
+    Must run inside the transfer's transaction, before any balance is changed, so the bucket
+    lock is held and the bucket commits (or rolls back) with the transfer.
+     */
+    public void record(User owner, Money amount) {
+        String ownerUid = owner.getUid();
+        BigDecimal reference = toReference(exchangeRateService.getSnapshot(), amount);
+        long hour = currentHour();
+
+        //adding zero locks the bucket; past hours come from the ring, the current one from the upsert
+        BigDecimal hourTotal = spendBucketRepository.add(UUID.randomUUID().toString(), ownerUid, hour, BigDecimal.ZERO);
+        SpendWindow window = window(ownerUid);
+        BigDecimal afterTransfer = hourTotal.add(reference);
+        if (window.sum(hour - 1, DAY_HOURS - 1).add(afterTransfer).compareTo(DAILY_LIMIT) > 0) {
+            throw new LimitExceededException("Daily transfer limit exceeded.");
+        }
+        if (window.sum(hour - 1, WEEK_HOURS - 1).add(afterTransfer).compareTo(WEEKLY_LIMIT) > 0) {
+            throw new LimitExceededException("Weekly transfer limit exceeded.");
+        }
+
+        BigDecimal total = spendBucketRepository.add(UUID.randomUUID().toString(), ownerUid, hour, reference);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    raise(ownerUid, hour, total);
+                }
+            });
+        } else {
+            raise(ownerUid, hour, total);
+        }
+    }
+
+    /**
+    Amount (in the reference currency) the user transferred out during the last hours
+    clock hours, current one included.
+     */
+    public BigDecimal spentInLast(String ownerUid, int hours) {
+        if (hours < 1 || hours > WEEK_HOURS) {
+            throw new IllegalArgumentException("Window must be between 1 and " + WEEK_HOURS + " hours");
+        }
+        return window(ownerUid).sum(currentHour(), hours);
+    }
+
+    /**
+    The amount in the limits' reference currency, converted at the given snapshot.
+     */
+    public BigDecimal toReference(ExchangeRateService.RateSnapshot snapshot, BigDecimal amount, String currency) {
+        return toReference(snapshot, Money.of(amount, currency, RoundingMode.HALF_UP));
+    }
+
+    public BigDecimal toReference(ExchangeRateService.RateSnapshot snapshot, Money amount) {
+        if (amount.getCurrency().equals(referenceCurrency)) {
+            return amount.toBigDecimal();
+        }
+        return amount.convert(snapshot.crossRate(amount.getCurrency(), referenceCurrency), referenceCurrency, RoundingMode.HALF_UP)
+                .toBigDecimal();
+    }
+
+    /**
+    Drops rings that have not been used for a while and buckets that fell out of the weekly window.
+     */
+    public void trim() {
+        long idleBefore = System.nanoTime() - TimeUnit.MINUTES.toNanos(idleMinutes);
+        windows.values().removeIf(window -> window.lastUsed - idleBefore < 0);
+        int deleted = spendBucketRepository.deleteOlderThan(currentHour() - WEEK_HOURS);
+        log.debug("Spend counters trimmed: {} cached users, {} old buckets deleted", windows.size(), deleted);
+    }
+
+    //Waits for a load of the same user in progress, so the committed total always reaches the ring
+    private void raise(String ownerUid, long hour, BigDecimal total) {
+        windows.computeIfPresent(ownerUid, (uid, window) -> {
+            window.raise(hour, total);
+            return window;
+        });
+    }
+
+    private SpendWindow window(String ownerUid) {
+        if (windows.size() >= maxCachedUsers && !windows.containsKey(ownerUid)) {
+            windows.clear();
+        }
+        return windows.computeIfAbsent(ownerUid, this::load);
+    }
+
+    //Runs inside computeIfAbsent: one query per user per cache lifetime
+    private SpendWindow load(String ownerUid) {
+        SpendWindow window = new SpendWindow();
+        for (SpendBucket bucket : spendBucketRepository.findByOwnerUidAndBucketHourGreaterThanEqual(
+                ownerUid, currentHour() - WEEK_HOURS + 1)) {
+            window.raise(bucket.getBucketHour(), bucket.getAmount());
+        }
+        return window;
+    }
+
+    private static long currentHour() {
+        return TimeUnit.MILLISECONDS.toHours(System.currentTimeMillis());
+    }
+
+    //Ring of the last WEEK_HOURS hourly totals, slot = hour % WEEK_HOURS
+    static class SpendWindow {
+        private final long[] hours = new long[WEEK_HOURS];
+        private final BigDecimal[] totals = new BigDecimal[WEEK_HOURS];
+        private volatile long lastUsed = System.nanoTime();
+
+        SpendWindow() {
+            Arrays.fill(hours, -1);
+        }
+
+        synchronized void raise(long hour, BigDecimal total) {
+            int slot = (int) (hour % WEEK_HOURS);
+            if (hours[slot] < hour) {
+                hours[slot] = hour;
+                totals[slot] = total;
+            } else if (hours[slot] == hour && totals[slot].compareTo(total) < 0) {
+                totals[slot] = total;
+            }
+            lastUsed = System.nanoTime();
+        }
+
+        synchronized BigDecimal sum(long now, int hourCount) {
+            BigDecimal sum = BigDecimal.ZERO;
+            for (long hour = now - hourCount + 1; hour <= now; hour++) {
+                int slot = (int) (hour % WEEK_HOURS);
+                if (hours[slot] == hour) {
+                    sum = sum.add(totals[slot]);
+                }
+            }
+            lastUsed = System.nanoTime();
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package lendrix.web.app.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SpendingRollupScheduleTaskRunnerComponent implements CommandLineRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(SpendingRollupScheduleTaskRunnerComponent.class);
+    private final SpendingRollupService spendingRollupService;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public SpendingRollupScheduleTaskRunnerComponent(SpendingRollupService spendingRollupService, ScheduledExecutorService scheduler) {
+        this.spendingRollupService = spendingRollupService;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        logger.info("Scheduling spending rollup maintenance");
+        //daily: backfills on the first run, then reconciles the last finished days.
+        //A backfill can take hours, so it runs on its own thread and the shared scheduler stays free
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (!running.compareAndSet(false, true)) {
+                return;
+            }
+            Thread.ofVirtual().name("spending-rollups").start(() -> {
+                try {
+                    spendingRollupService.maintain();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    logger.error("Spending rollup maintenance failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }, 5, 24 * 60, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,227 @@
+package lendrix.web.app.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lendrix.web.app.dto.SpendingInsightsDto;
+import lendrix.web.app.dto.SpendingRollupDto;
+import lendrix.web.app.entity.SpendingRollup;
+import lendrix.web.app.entity.Transaction;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+import lendrix.web.app.repository.SpendingRollupRepository;
+import lendrix.web.app.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Per-user daily rollups of completed transactions (user x currency x type x day) behind
+the insights screen, so it reads at most one row per currency, type and day instead of
+aggregating the transactions. A transaction counts for the owner of the account or card
+it moved money on.
+
+Transactions are collected per database transaction and added to spending_rollups right
+before it commits, in key order: the rollup rows are locked only for the commit, and two
+transactions touching the same rows always lock them in the same order.
+The rebuild recomputes whole days from the transactions table, in parallel, to backfill
+history and to reconcile recent days. Archived months are never rebuilt since their
+transactions are no longer in the table; their rollups are the only record left.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SpendingRollupService {
+
+    record Key(String ownerUid, LocalDate day, String currency, Type type) implements Comparable<Key> {
+
+        private static final Comparator<Key> ORDER = Comparator.comparing(Key::ownerUid)
+                .thenComparing(Key::day).thenComparing(Key::currency).thenComparing(Key::type);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    record Delta(long count, BigDecimal amount, BigDecimal fees) {
+
+        Delta plus(Delta other) {
+            return new Delta(count + other.count, amount.add(other.amount), fees.add(other.fees));
+        }
+    }
+
+    private final SpendingRollupRepository spendingRollupRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionArchiveStore archiveStore;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${insights.max-days:366}")
+    private int maxDays;
+
+    @Value("${insights.rollups.reconcile-days:2}")
+    private int reconcileDays;
+
+    //each worker holds one pooled connection while it rebuilds a day
+    @Value("${insights.rollups.rebuild-parallelism:4}")
+    private int rebuildParallelism;
+
+    /**
+    Adds a transaction that was just saved to its rollup. Only completed transactions count.
+    Inside a transaction the rollup is written just before the commit, so it commits (or
+    rolls back) together with the transaction row.
+     */
+    public void record(Transaction tx) {
+        String currency = tx.getAccount() != null ? tx.getAccount().getCode()
+                : tx.getCard() != null ? tx.getCard().getCurrency() : null;
+        User owner = owner(tx);
+        if (tx.getStatus() != Status.COMPLETED || owner == null || tx.getType() == null || currency == null) {
+            return;
+        }
+        LocalDate day = (tx.getCreatedAt() == null ? LocalDateTime.now() : tx.getCreatedAt()).toLocalDate();
+        Key key = new Key(owner.getUid(), day, currency, tx.getType());
+        Delta delta = new Delta(1, tx.getAmount() == null ? BigDecimal.ZERO : tx.getAmount(),
+                tx.getTxFee() == null ? BigDecimal.ZERO : tx.getTxFee());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactionTemplate.executeWithoutResult(status -> write(key, delta));
+            return;
+        }
+        pendingRollups().merge(key, delta, Delta::plus);
+    }
+
+    /**
+    The user's rollups between from and to (inclusive), per day and summed over the range.
+     */
+    public SpendingInsightsDto insights(String ownerUid, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new IllegalArgumentException("The range can cover at most " + maxDays + " days");
+        }
+        List<SpendingRollupDto> days = new ArrayList<>();
+        Map<Key, Delta> totals = new TreeMap<>();
+        for (SpendingRollup rollup : spendingRollupRepository.findByOwnerUidAndRollupDayBetweenOrderByRollupDay(ownerUid, from, to)) {
+            days.add(new SpendingRollupDto(rollup.getRollupDay(), rollup.getCurrency(), rollup.getType(),
+                    rollup.getTxCount(), rollup.getAmount(), rollup.getFees()));
+            totals.merge(new Key(ownerUid, from, rollup.getCurrency(), rollup.getType()),
+                    new Delta(rollup.getTxCount(), rollup.getAmount(), rollup.getFees()), Delta::plus);
+        }
+        List<SpendingRollupDto> summed = new ArrayList<>(totals.size());
+        totals.forEach((key, total) -> summed.add(
+                new SpendingRollupDto(null, key.currency(), key.type(), total.count(), total.amount(), total.fees())));
+        return new SpendingInsightsDto(from, to, summed, days);
+    }
+
+    /**
+    Backfills the whole history the first time (or whenever completed transactions older
+    than the first rollup show up), then recomputes the last reconcile-days finished days.
+     */
+    public void maintain() throws InterruptedException {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Optional<LocalDate> firstTransaction = transactionRepository.findFirstCompletedAt().map(LocalDateTime::toLocalDate);
+        Optional<LocalDate> firstRollup = spendingRollupRepository.findFirstRollupDay();
+        if (firstTransaction.isPresent() && (firstRollup.isEmpty() || firstRollup.get().isAfter(firstTransaction.get()))) {
+            log.info("Backfilling spending rollups from {}", firstTransaction.get());
+            rebuild(firstTransaction.get(), LocalDate.now());
+        } else if (reconcileDays > 0) {
+            rebuild(yesterday.minusDays(reconcileDays - 1), yesterday);
+        }
+    }
+
+    /**
+    Recomputes the rollups of every day from from to to (inclusive) from the transactions,
+    one transaction per day and rebuild-parallelism days at a time. Returns the rebuilt days.
+     */
+    public int rebuild(LocalDate from, LocalDate to) throws InterruptedException {
+        long startedAt = System.nanoTime();
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            if (!archiveStore.contains(YearMonth.from(day))) {
+                days.add(day);
+            }
+        }
+        List<Future<Integer>> futures = new ArrayList<>(days.size());
+        try (ExecutorService workers = Executors.newFixedThreadPool(rebuildParallelism,
+                Thread.ofVirtual().name("rollup-rebuild-", 0).factory())) {
+            for (LocalDate day : days) {
+                futures.add(workers.submit(() -> transactionTemplate.execute(status -> {
+                    spendingRollupRepository.deleteDay(day);
+                    return spendingRollupRepository.rebuildDay(day, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+                })));
+            }
+        }
+        int failed = 0;
+        long rollups = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                rollups += futures.get(i).get();
+            } catch (ExecutionException e) {
+                failed++;
+                log.error("Rebuilding the spending rollups of {} failed", days.get(i), e.getCause());
+            }
+        }
+        log.info("Rebuilt spending rollups of {} days ({} rollups) from {} to {} in {}ms", days.size() - failed, rollups,
+                from, to, (System.nanoTime() - startedAt) / 1_000_000);
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " of " + days.size() + " days could not be rebuilt");
+        }
+        return days.size();
+    }
+
+    //rollups belong to the owner of the account (or card) the money moved on, whoever made the transfer
+    private static User owner(Transaction tx) {
+        User owner = tx.getAccount() != null ? tx.getAccount().getOwner()
+                : tx.getCard() != null ? tx.getCard().getOwner() : null;
+        return owner != null ? owner : tx.getOwner();
+    }
+
+    private void write(Key key, Delta delta) {
+        spendingRollupRepository.add(key.ownerUid(), key.day(), key.currency(), key.type().name(),
+                delta.count(), delta.amount(), delta.fees());
+    }
+
+    //the current transaction's pending rollups, registering its flush on first use
+    private Map<Key, Delta> pendingRollups() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingRollups pending && pending.owner() == this) {
+                return pending.rollups;
+            }
+        }
+        PendingRollups pending = new PendingRollups();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending.rollups;
+    }
+
+    private class PendingRollups implements TransactionSynchronization {
+        private final Map<Key, Delta> rollups = new TreeMap<>();
+
+        SpendingRollupService owner() {
+            return SpendingRollupService.this;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            rollups.forEach(SpendingRollupService.this::write);
+        }
+    }
+}
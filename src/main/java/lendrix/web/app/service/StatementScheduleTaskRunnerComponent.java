@@ -0,0 +1,45 @@
+package lendrix.web.app.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class StatementScheduleTaskRunnerComponent implements CommandLineRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(StatementScheduleTaskRunnerComponent.class);
+    private final StatementService statementService;
+    private final ScheduledExecutorService scheduler;
+
+    @Value("${statements.enabled:true}")
+    private boolean enabled;
+
+    public StatementScheduleTaskRunnerComponent(StatementService statementService, ScheduledExecutorService scheduler) {
+        this.statementService = statementService;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (!enabled) {
+            logger.info("Month-end statements are disabled");
+            return;
+        }
+        logger.info("Scheduling month-end statements");
+        //hourly: a no-op once last month is complete; a run takes long, so it gets its own thread
+        scheduler.scheduleWithFixedDelay(() -> Thread.ofVirtual().name("statements").start(() -> {
+            try {
+                statementService.generatePreviousMonth();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Month-end statement generation failed", e);
+            }
+        }), 10, 60, TimeUnit.MINUTES);
+    }
+}
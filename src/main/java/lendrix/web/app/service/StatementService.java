@@ -0,0 +1,345 @@
+package lendrix.web.app.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lendrix.web.app.dto.TransactionSummaryDto;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+import lendrix.web.app.repository.AccountRepository;
+import lendrix.web.app.repository.DailyBalanceRepository;
+import lendrix.web.app.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Month-end statements for every account, written under statements.path/YYYY-MM as gzip
+NDJSON chunks with one line per account: opening and closing balance from the daily
+balance snapshots, the month's transactions and their totals per type.
+
+Accounts are split into chunks of statements.chunk-size consecutive ids, recorded once in
+manifest.json so the chunks stay the same across restarts. Chunks run in parallel on
+virtual threads, statements.parallelism at a time (each holds one pooled connection while
+it streams its transactions), and a chunk file only appears once it is complete, so a
+rerun after a crash or failure skips the chunks already written. _SUCCESS is written
+last, with the counts and the throughput of the run.
+ */
+@Service
+@Slf4j
+public class StatementService {
+
+    public record Summary(String month, int chunks, long accounts, long transactions, long millis, double accountsPerSecond) {}
+
+    record Manifest(String month, List<String> boundaries) {}
+
+    private record StatementAccount(String accountId, long accountNumber, String currency, String ownerUid) {}
+
+    private record ChunkResult(long accounts, long transactions) {}
+
+    private static final String MANIFEST = "manifest.json";
+    private static final String SUCCESS = "_SUCCESS";
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final DailyBalanceRepository dailyBalanceRepository;
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${statements.chunk-size:500}")
+    private int chunkSize;
+
+    //kept below the connection pool size so requests still get connections during a run
+    @Value("${statements.parallelism:4}")
+    private int parallelism;
+
+    @Value("${statements.fetch-size:1000}")
+    private int fetchSize;
+
+    public StatementService(AccountRepository accountRepository,
+                            TransactionRepository transactionRepository,
+                            DailyBalanceRepository dailyBalanceRepository,
+                            BalanceSnapshotService balanceSnapshotService,
+                            PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper,
+                            @Value("${statements.path:data/statements}") String directory) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.dailyBalanceRepository = dailyBalanceRepository;
+        this.balanceSnapshotService = balanceSnapshotService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+    }
+
+    public boolean isComplete(YearMonth month) {
+        return Files.isRegularFile(monthDirectory(month).resolve(SUCCESS));
+    }
+
+    /**
+    Generates the previous month's statements unless they are complete already or a run is
+    in progress. Returns null when there was nothing to do.
+     */
+    public Summary generatePreviousMonth() throws IOException, InterruptedException {
+        YearMonth month = YearMonth.now().minusMonths(1);
+        if (running.get() || isComplete(month) || month.atEndOfMonth().isAfter(balanceSnapshotService.lastFinishedDay())) {
+            return null;
+        }
+        return generate(month);
+    }
+
+    /**
+    Generates the statements of a finished month, resuming from the chunks written by an
+    earlier run. Throws IllegalStateException when a run is already in progress or some
+    chunks failed; the chunks that succeeded are kept for the next attempt.
+     */
+    public Summary generate(YearMonth month) throws IOException, InterruptedException {
+        if (month.atEndOfMonth().isAfter(balanceSnapshotService.lastFinishedDay())) {
+            throw new IllegalArgumentException("Month " + month + " has not finished yet");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Statements are already being generated");
+        }
+        try {
+            //closing balances come from the snapshot of the month's last day
+            balanceSnapshotService.snapshotPendingDays();
+            return run(month);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Summary run(YearMonth month) throws IOException, InterruptedException {
+        long startedAt = System.nanoTime();
+        Path target = monthDirectory(month);
+        Files.createDirectories(target);
+        List<String> boundaries = manifest(month, target).boundaries();
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < boundaries.size(); i++) {
+            if (!Files.isRegularFile(target.resolve(chunkName(i)))) {
+                pending.add(i);
+            }
+        }
+        if (pending.size() < boundaries.size()) {
+            log.info("Resuming statements for {}: {} of {} chunks were already written", month,
+                    boundaries.size() - pending.size(), boundaries.size());
+        }
+
+        AtomicLong accounts = new AtomicLong();
+        AtomicLong transactions = new AtomicLong();
+        AtomicLong done = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>(pending.size());
+        try (ExecutorService workers = Executors.newFixedThreadPool(parallelism,
+                Thread.ofVirtual().name("statements-", 0).factory())) {
+            for (int chunk : pending) {
+                //chunk i covers the ids after the previous boundary up to its own
+                String afterId = chunk == 0 ? "" : boundaries.get(chunk - 1);
+                String lastId = boundaries.get(chunk);
+                futures.add(workers.submit(() -> {
+                    long chunkStartedAt = System.nanoTime();
+                    ChunkResult result = writeChunk(month, afterId, lastId, target.resolve(chunkName(chunk)));
+                    accounts.addAndGet(result.accounts());
+                    transactions.addAndGet(result.transactions());
+                    log.info("Statement chunk {} for {}: {} accounts, {} transactions in {}ms ({}/{})",
+                            chunk, month, result.accounts(), result.transactions(),
+                            (System.nanoTime() - chunkStartedAt) / 1_000_000, done.incrementAndGet(), pending.size());
+                    return null;
+                }));
+            }
+        }
+
+        int failed = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failed++;
+                log.error("Statement chunk for {} failed", month, e.getCause());
+            }
+        }
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " of " + boundaries.size() + " statement chunks for " + month + " failed");
+        }
+
+        //throughput of this run only; resumed chunks were counted by the run that wrote them
+        long millis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        Summary summary = new Summary(month.toString(), boundaries.size(), accounts.get(), transactions.get(), millis,
+                accounts.get() * 1000.0 / millis);
+        writeAtomically(target.resolve(SUCCESS), out -> out.write(objectMapper.writeValueAsBytes(summary)));
+        log.info("Generated statements for {}: {} accounts, {} transactions in {}ms ({} accounts/s)", month,
+                summary.accounts(), summary.transactions(), millis, String.format("%.1f", summary.accountsPerSecond()));
+        return summary;
+    }
+
+    //chunk boundaries are computed by the first run for a month and reused by every rerun
+    private Manifest manifest(YearMonth month, Path target) throws IOException {
+        Path file = target.resolve(MANIFEST);
+        if (Files.isRegularFile(file)) {
+            return objectMapper.readValue(file.toFile(), Manifest.class);
+        }
+        Manifest manifest = new Manifest(month.toString(), accountRepository.findChunkBoundaries(chunkSize));
+        writeAtomically(file, out -> out.write(objectMapper.writeValueAsBytes(manifest)));
+        return manifest;
+    }
+
+    private ChunkResult writeChunk(YearMonth month, String afterId, String lastId, Path file) throws IOException {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        long[] transactions = new long[1];
+        long[] accounts = new long[1];
+        writeAtomically(file, out -> {
+            GZIPOutputStream compressed = new GZIPOutputStream(out, 65536);
+            JsonGenerator json = objectMapper.getFactory().createGenerator(
+                    new BufferedWriter(new OutputStreamWriter(compressed, StandardCharsets.UTF_8), 65536));
+            //one statement per line
+            json.setRootValueSeparator(new SerializedString("\n"));
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    List<StatementAccount> chunk = accountRepository.findStatementAccounts(afterId, lastId, to).stream()
+                            .map(row -> new StatementAccount((String) row[0], ((Number) row[1]).longValue(), (String) row[2], (String) row[3]))
+                            .toList();
+                    Map<String, BigDecimal> opening = balances(afterId, lastId, month.atDay(1));
+                    Map<String, BigDecimal> closing = balances(afterId, lastId, month.plusMonths(1).atDay(1));
+                    Set<String> ids = chunk.stream().map(StatementAccount::accountId).collect(Collectors.toSet());
+                    try (Stream<TransactionSummaryDto> summaries = transactionRepository.streamAccountSummaries(afterId, lastId, from, to, fetchSize)) {
+                        //both are in the database's account id order, so one pass pairs them up
+                        Iterator<TransactionSummaryDto> rows = summaries.filter(row -> ids.contains(row.getAccountId())).iterator();
+                        TransactionSummaryDto next = rows.hasNext() ? rows.next() : null;
+                        for (StatementAccount account : chunk) {
+                            json.writeStartObject();
+                            json.writeStringField("month", month.toString());
+                            json.writeStringField("accountId", account.accountId());
+                            json.writeNumberField("accountNumber", account.accountNumber());
+                            json.writeStringField("ownerUid", account.ownerUid());
+                            json.writeStringField("currency", account.currency());
+                            json.writeNumberField("openingBalance", opening.getOrDefault(account.accountId(), BigDecimal.ZERO));
+                            Map<Type, BigDecimal> totals = new EnumMap<>(Type.class);
+                            BigDecimal fees = BigDecimal.ZERO;
+                            json.writeArrayFieldStart("transactions");
+                            while (next != null && account.accountId().equals(next.getAccountId())) {
+                                writeTransaction(json, next);
+                                if (next.getStatus() == Status.COMPLETED) {
+                                    totals.merge(next.getType(), next.getAmount(), BigDecimal::add);
+                                    fees = fees.add(next.getTxFee() == null ? BigDecimal.ZERO : next.getTxFee());
+                                }
+                                transactions[0]++;
+                                next = rows.hasNext() ? rows.next() : null;
+                            }
+                            json.writeEndArray();
+                            json.writeObjectFieldStart("totals");
+                            for (Map.Entry<Type, BigDecimal> total : totals.entrySet()) {
+                                json.writeNumberField(total.getKey().name(), total.getValue());
+                            }
+                            json.writeEndObject();
+                            json.writeNumberField("fees", fees);
+                            json.writeNumberField("closingBalance", closing.getOrDefault(account.accountId(), BigDecimal.ZERO));
+                            json.writeEndObject();
+                            accounts[0]++;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (accounts[0] > 0) {
+                json.writeRaw('\n');
+            }
+            json.flush();
+            compressed.finish();
+        });
+        return new ChunkResult(accounts[0], transactions[0]);
+    }
+
+    private static void writeTransaction(JsonGenerator json, TransactionSummaryDto row) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("txid", row.getTxid());
+        json.writeStringField("createdAt", row.getCreatedAt().toString());
+        json.writeStringField("type", row.getType() == null ? null : row.getType().name());
+        json.writeStringField("status", row.getStatus() == null ? null : row.getStatus().name());
+        json.writeNumberField("amount", row.getAmount());
+        json.writeNumberField("fee", row.getTxFee());
+        if (row.getDescription() != null) {
+            json.writeStringField("description", row.getDescription());
+        }
+        if (row.getCounterparty() != null) {
+            json.writeStringField("counterparty", row.getCounterparty());
+        }
+        json.writeEndObject();
+    }
+
+    //end-of-day balance of every account in the chunk as of the snapshot before day
+    private Map<String, BigDecimal> balances(String afterId, String lastId, LocalDate day) {
+        Map<String, BigDecimal> balances = new HashMap<>();
+        for (Object[] row : dailyBalanceRepository.findBalancesBefore(afterId, lastId, day)) {
+            balances.put((String) row[0], (BigDecimal) row[1]);
+        }
+        return balances;
+    }
+
+    private interface Content {
+        void write(OutputStream out) throws IOException;
+    }
+
+    //written to a temporary name, forced to disk and moved into place, so a file under its final name is complete
+    private static void writeAtomically(Path target, Content content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            content.write(Channels.newOutputStream(channel));
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path monthDirectory(YearMonth month) {
+        return directory.resolve(month.toString());
+    }
+
+    private static String chunkName(int chunk) {
+        return String.format("chunk-%05d.ndjson.gz", chunk);
+    }
+}
@@ -0,0 +1,190 @@
+package lendrix.web.app.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lendrix.web.app.dto.TransactionSummaryDto;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+import lendrix.web.app.util.Csv;
+
+/**
+Cold storage for detached transaction partitions: one gzip CSV per month under
+transactions.archive.path, named transactions-YYYY-MM.csv.gz, with a header row of
+the table's column names. Files are written to a temporary name, forced to disk
+and then moved into place, so a file under the final name is always complete.
+ */
+@Component
+public class TransactionArchiveStore {
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final String PREFIX = "transactions-";
+    private static final String SUFFIX = ".csv.gz";
+
+    private final Path directory;
+
+    public TransactionArchiveStore(@Value("${transactions.archive.path:data/archive}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    public boolean contains(YearMonth month) {
+        return Files.isRegularFile(fileOf(month));
+    }
+
+    //Archived months, oldest first
+    public List<YearMonth> months() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> YearMonth.parse(name.substring(PREFIX.length(), name.length() - SUFFIX.length()), MONTH))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+    Writes every remaining row of rows as the archive of month and returns the row count.
+    The result set is read forward only, so with a fetch size it never has to be held in memory.
+     */
+    public long write(YearMonth month, ResultSet rows) throws IOException, SQLException {
+        Files.createDirectories(directory);
+        Path target = fileOf(month);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new GZIPOutputStream(Channels.newOutputStream(channel), 65536);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 65536);
+            //derived tsvector columns are left out, they are recomputed if rows are ever restored
+            ResultSetMetaData meta = rows.getMetaData();
+            List<Integer> archived = new ArrayList<>();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if (!"tsvector".equals(meta.getColumnTypeName(i))) {
+                    archived.add(i);
+                }
+            }
+            Object[] fields = new Object[archived.size()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = meta.getColumnLabel(archived.get(i));
+            }
+            Csv.writeRecord(writer, fields);
+            while (rows.next()) {
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = text(rows.getObject(archived.get(i)));
+                }
+                Csv.writeRecord(writer, fields);
+                count++;
+            }
+            writer.flush();
+            ((GZIPOutputStream) out).finish();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+    The owner's transactions in an archived month, oldest first (files are written in created_at order).
+    Scans the month's file, so this is meant for occasional lookups of old history.
+     */
+    public List<TransactionSummaryDto> read(YearMonth month, String ownerUid) throws IOException {
+        Path file = fileOf(month);
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No archived transactions for " + month);
+        }
+        List<TransactionSummaryDto> items = new ArrayList<>();
+        try (Reader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), 65536), StandardCharsets.UTF_8), 65536)) {
+            List<String> header = Csv.readRecord(reader);
+            if (header == null) {
+                return items;
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i), i);
+            }
+            int owner = columns.get("owner_id");
+            List<String> record;
+            while ((record = Csv.readRecord(reader)) != null) {
+                if (ownerUid.equals(record.get(owner))) {
+                    items.add(toSummary(record, columns));
+                }
+            }
+        }
+        return items;
+    }
+
+    private Path fileOf(YearMonth month) {
+        return directory.resolve(PREFIX + month.format(MONTH) + SUFFIX);
+    }
+
+    private static Object text(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        return value;
+    }
+
+    private static TransactionSummaryDto toSummary(List<String> record, Map<String, Integer> columns) {
+        String status = field(record, columns, "status");
+        String type = field(record, columns, "type");
+        String amount = field(record, columns, "amount");
+        String txFee = field(record, columns, "tx_fee");
+        String rateVersion = field(record, columns, "rate_version");
+        return new TransactionSummaryDto(
+                field(record, columns, "txid"),
+                amount == null ? null : new BigDecimal(amount),
+                txFee == null ? null : new BigDecimal(txFee),
+                type == null ? null : Type.valueOf(type),
+                status == null ? null : Status.values()[Integer.parseInt(status)], //stored as the ordinal
+                LocalDateTime.parse(field(record, columns, "created_at")),
+                field(record, columns, "account_id"),
+                field(record, columns, "card_id"),
+                rateVersion == null ? null : Long.valueOf(rateVersion),
+                field(record, columns, "description"),
+                field(record, columns, "counterparty"));
+    }
+
+    private static String field(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= record.size() ? null : record.get(index);
+    }
+}
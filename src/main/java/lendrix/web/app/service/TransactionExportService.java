@@ -0,0 +1,179 @@
+package lendrix.web.app.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import lendrix.web.app.dto.TransactionSummaryDto;
+import lendrix.web.app.repository.TransactionRepository;
+import lendrix.web.app.util.Csv;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Writes a user's whole transaction history as CSV or NDJSON straight to the response.
+Rows come from a server-side cursor (Postgres only uses one with autocommit off, hence
+the read-only transaction) fetch-size rows at a time and are written as they arrive,
+so memory use does not grow with the length of the history.
+Each export holds a pooled connection until it is done, so at most max-concurrent
+exports run at once; the others are turned away rather than starving the pool.
+Months already moved to the archive come first, read from their files one month at a time.
+ */
+@Service
+@Slf4j
+public class TransactionExportService {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String CSV_HEADER = "txid,createdAt,type,status,amount,txFee,accountId,cardId,rateVersion,description,counterparty";
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionArchiveStore transactionArchiveStore;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter rowWriter;
+    private final Semaphore slots;
+
+    @Value("${transactions.export.fetch-size:500}")
+    private int fetchSize;
+
+    //rows between flushes, so the client sees progress without a flush per row
+    @Value("${transactions.export.flush-rows:1000}")
+    private int flushRows;
+
+    public TransactionExportService(TransactionRepository transactionRepository,
+                                    TransactionArchiveStore transactionArchiveStore,
+                                    PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper,
+                                    @Value("${transactions.export.max-concurrent:3}") int maxConcurrent) {
+        this.transactionRepository = transactionRepository;
+        this.transactionArchiveStore = transactionArchiveStore;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.rowWriter = objectMapper.writerFor(TransactionSummaryDto.class);
+        this.slots = new Semaphore(maxConcurrent);
+    }
+
+    /**
+    Takes an export slot, or returns false when max-concurrent exports are already running.
+    Every slot taken must be given back with releaseSlot once the export ends.
+     */
+    public boolean tryAcquireSlot() {
+        return slots.tryAcquire();
+    }
+
+    public void releaseSlot() {
+        slots.release();
+    }
+
+    public static Format parseFormat(String format) {
+        try {
+            return Format.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+    }
+
+    /**
+    Streams every transaction owned by the user, oldest first, into out: the archived
+    months, then the rows still in the database.
+    Runs on the response thread, so it holds one pooled connection while the database rows are streamed.
+     */
+    public void export(String ownerUid, Format format, boolean gzip, OutputStream out) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, 8192, true) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 16384);
+        long startedAt = System.nanoTime();
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        //archived months are older than every row left in the table
+        long rows = 0;
+        for (YearMonth month : transactionArchiveStore.months()) {
+            rows += write(transactionArchiveStore.read(month, ownerUid).iterator(), format, writer);
+        }
+        try {
+            Long written = readOnlyTransaction.execute(status -> {
+                try (Stream<TransactionSummaryDto> summaries = transactionRepository.streamSummaries(ownerUid, fetchSize)) {
+                    return write(summaries.iterator(), format, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            rows += written == null ? 0 : written;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        if (gzip) {
+            ((GZIPOutputStream) target).finish();
+        }
+        log.info("Exported {} transactions as {} in {}ms", rows, format, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    private long write(Iterator<TransactionSummaryDto> summaries, Format format, Writer writer) throws IOException {
+        long rows = 0;
+        while (summaries.hasNext()) {
+            TransactionSummaryDto summary = summaries.next();
+            if (format == Format.CSV) {
+                writeCsv(summary, writer);
+            } else {
+                writer.write(rowWriter.writeValueAsString(summary));
+                writer.write('\n');
+            }
+            if (++rows % flushRows == 0) {
+                writer.flush();
+            }
+        }
+        return rows;
+    }
+
+    private static void writeCsv(TransactionSummaryDto summary, Writer writer) throws IOException {
+        Csv.writeRecord(writer,
+                summary.getTxid(),
+                summary.getCreatedAt(),
+                summary.getType(),
+                summary.getStatus(),
+                summary.getAmount() == null ? null : summary.getAmount().toPlainString(),
+                summary.getTxFee() == null ? null : summary.getTxFee().toPlainString(),
+                summary.getAccountId(),
+                summary.getCardId(),
+                summary.getRateVersion(),
+                summary.getDescription(),
+                summary.getCounterparty());
+    }
+}
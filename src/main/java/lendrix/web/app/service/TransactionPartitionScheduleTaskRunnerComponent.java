@@ -0,0 +1,45 @@
+package lendrix.web.app.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TransactionPartitionScheduleTaskRunnerComponent implements CommandLineRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(TransactionPartitionScheduleTaskRunnerComponent.class);
+    private final TransactionPartitionService partitionService;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public TransactionPartitionScheduleTaskRunnerComponent(TransactionPartitionService partitionService, ScheduledExecutorService scheduler) {
+        this.partitionService = partitionService;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        logger.info("Scheduling transaction partition maintenance");
+        //daily. Archiving a month streams a whole partition to a file, so it runs on its own
+        //thread and the shared scheduler stays free
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (!running.compareAndSet(false, true)) {
+                return;
+            }
+            Thread.ofVirtual().name("transaction-partitions").start(() -> {
+                try {
+                    partitionService.maintain();
+                } catch (RuntimeException e) {
+                    logger.error("Transaction partition maintenance failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }, 1, 24 * 60, TimeUnit.MINUTES);
+    }
+}
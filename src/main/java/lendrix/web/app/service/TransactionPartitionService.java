@@ -0,0 +1,131 @@
+package lendrix.web.app.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Maintenance of the monthly transactions partitions created by the V1 migration.
+Keeps partitions ready a few months ahead, and moves months older than the retention
+period to the archive: the partition is streamed to a gzip file, then detached and
+dropped in the same transaction, so a failure at any step leaves it in the database
+and the next run simply tries again.
+Does nothing when the table is not partitioned (schema managed by ddl-auto alone).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TransactionPartitionService {
+
+    //only one instance archives at a time
+    private static final long MAINTENANCE_LOCK = 0x6c656e64726978L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionArchiveStore archiveStore;
+
+    @Value("${transactions.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${transactions.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    @Value("${transactions.archive.retention-months:24}")
+    private int retentionMonths;
+
+    @Value("${transactions.archive.fetch-size:1000}")
+    private int fetchSize;
+
+    public boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('transactions'))""",
+                Boolean.class);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    public void maintain() {
+        if (!isPartitioned()) {
+            log.debug("transactions is not partitioned, skipping partition maintenance");
+            return;
+        }
+        ensurePartitions();
+        if (archiveEnabled) {
+            archiveExpired();
+        }
+    }
+
+    //Current month plus monthsAhead; transactions dated past the last partition cannot be inserted
+    public void ensurePartitions() {
+        YearMonth month = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            jdbcTemplate.queryForObject("SELECT ensure_transactions_partition(?)", String.class,
+                    Date.valueOf(month.plusMonths(i).atDay(1)));
+        }
+    }
+
+    public int archiveExpired() {
+        YearMonth cutoff = YearMonth.now().minusMonths(retentionMonths);
+        int archived = 0;
+        for (String partition : partitions()) {
+            YearMonth month = monthOf(partition);
+            if (month != null && month.isBefore(cutoff) && archive(partition, month)) {
+                archived++;
+            }
+        }
+        return archived;
+    }
+
+    private boolean archive(String partition, YearMonth month) {
+        long startedAt = System.nanoTime();
+        Long rows = transactionTemplate.execute(status -> {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK))) {
+                return null;
+            }
+            JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+            cursor.setFetchSize(fetchSize);
+            //partition names come from pg_inherits and match transactions_YYYY_MM, so they are safe to inline
+            Long written = cursor.query("SELECT * FROM " + partition + " ORDER BY created_at, txid", rs -> {
+                try {
+                    return archiveStore.write(month, rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            jdbcTemplate.execute("ALTER TABLE transactions DETACH PARTITION " + partition);
+            jdbcTemplate.execute("DROP TABLE " + partition);
+            return written;
+        });
+        if (rows == null) {
+            log.info("Partition {} is being archived by another instance", partition);
+            return false;
+        }
+        log.info("Archived {} ({} transactions) in {}ms", partition, rows, (System.nanoTime() - startedAt) / 1_000_000);
+        return true;
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = to_regclass('transactions')
+                ORDER BY c.relname""", String.class);
+    }
+
+    //transactions_2024_01 -> 2024-01, null for anything else
+    static YearMonth monthOf(String partition) {
+        if (!partition.matches("transactions_\\d{4}_\\d{2}")) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(partition.substring(13, 17)), Integer.parseInt(partition.substring(18, 20)));
+    }
+}
@@ -1,45 +1,174 @@
 package lendrix.web.app.service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
 
 import org.springframework.stereotype.Service;
 
-import lendrix.web.app.entity.Transaction;
+import lendrix.web.app.dto.TransactionPageDto;
+import lendrix.web.app.dto.TransactionSummaryDto;
+import lendrix.web.app.dto.TransferDto;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+import lendrix.web.app.repository.QueuedTransferRepository;
 import lendrix.web.app.repository.TransactionRepository;
+import lendrix.web.app.repository.UserRepository;
 
 @Service
 public class TransactionService {
     private final TransactionRepository transactionRepository;
-    public static final BigDecimal DAILY_LIMIT = new BigDecimal("2000.00");
-    public static final BigDecimal WEEKLY_LIMIT = new BigDecimal("10000.00");
+    private final UserRepository userRepository;
+    private final SpendCounterService spendCounterService;
+    private final TransactionArchiveStore transactionArchiveStore;
+    private final QueuedTransferRepository queuedTransferRepository;
+    private final ExchangeRateService exchangeRateService;
+    public static final BigDecimal DAILY_LIMIT = SpendCounterService.DAILY_LIMIT;
+    public static final BigDecimal WEEKLY_LIMIT = SpendCounterService.WEEKLY_LIMIT;
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int MAX_SEARCH_TERMS = 8;
 
-    public TransactionService(TransactionRepository transactionRepository) {
+    public TransactionService(TransactionRepository transactionRepository, UserRepository userRepository,
+                              SpendCounterService spendCounterService, TransactionArchiveStore transactionArchiveStore,
+                              QueuedTransferRepository queuedTransferRepository, ExchangeRateService exchangeRateService) {
         this.transactionRepository = transactionRepository;
+        this.userRepository = userRepository;
+        this.spendCounterService = spendCounterService;
+        this.transactionArchiveStore = transactionArchiveStore;
+        this.queuedTransferRepository = queuedTransferRepository;
+        this.exchangeRateService = exchangeRateService;
     }
 
-    //Gets all transactions where the user is either the sender or receiver.
-    public List<Transaction> getUserTransactionHistory(String username) {
-        return transactionRepository.findBySenderOrReceiver(username, username);
+    //Gets one page of the transactions owned by the user, newest first
+    public TransactionPageDto getUserTransactionHistory(String username, Type type, Status status, String accountId,
+                                                        String cursor, Integer limit) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+        return getTransactionPage(user.getUid(), type, status, accountId, cursor, limit);
     }
 
-    //Gets all transactions owned by the user
-    public List<Transaction> getUserOwnedTransactions(String username) {
-        return transactionRepository.findByOwner_Username(username);
+    /**
+    Keyset pagination over (createdAt, txid): the cursor is the position of the last
+    item of the previous page, so every page is one index range scan however deep it is.
+    The last page lists the archived months, whose transactions are no longer in the table.
+     */
+    public TransactionPageDto getTransactionPage(String ownerUid, Type type, Status status, String accountId,
+                                                 String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        LocalDateTime afterCreatedAt = null;
+        String afterTxid = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+                afterCreatedAt = LocalDateTime.parse(position[0]);
+                afterTxid = position[1];
+            } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        //one extra row tells whether there is a next page
+        List<TransactionSummaryDto> items = transactionRepository.findSummaries(
+                ownerUid, type, status, accountId, afterCreatedAt, afterTxid, pageSize + 1);
+        if (items.size() <= pageSize) {
+            //the table ends here; anything older was moved to the archive
+            try {
+                return new TransactionPageDto(items, null, transactionArchiveStore.months());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        items = items.subList(0, pageSize);
+        TransactionSummaryDto last = items.get(pageSize - 1);
+        String nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                (last.getCreatedAt() + "|" + last.getTxid()).getBytes(StandardCharsets.UTF_8));
+        return new TransactionPageDto(items, nextCursor, null);
+    }
+
+    /**
+    Full-text search over the user's transaction descriptions and counterparties, newest first.
+    Every word of the query must match the start of a word in the transaction, so
+    "transf 1234" finds "Transfer to account 1234567890".
+     */
+    public List<TransactionSummaryDto> searchTransactions(String ownerUid, String query, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return transactionRepository.searchSummaries(ownerUid, toPrefixQuery(query), pageSize);
+    }
+
+    //Letters and digits only, so the result is always a valid tsquery whatever the user typed
+    static String toPrefixQuery(String query) {
+        StringBuilder tsQuery = new StringBuilder();
+        int terms = 0;
+        for (String term : (query == null ? "" : query.toLowerCase()).split("[^\\p{L}\\p{N}]+")) {
+            if (term.isEmpty() || terms == MAX_SEARCH_TERMS) {
+                continue;
+            }
+            if (terms++ > 0) {
+                tsQuery.append(" & ");
+            }
+            tsQuery.append(term).append(":*");
+        }
+        if (terms == 0) {
+            throw new IllegalArgumentException("Search query must contain letters or digits");
+        }
+        return tsQuery.toString();
+    }
+
+    //Months whose transactions were moved out of the database into the archive
+    public List<YearMonth> getArchivedMonths() throws IOException {
+        return transactionArchiveStore.months();
+    }
+
+    //The user's transactions of an archived month (yyyy-MM), oldest first
+    public List<TransactionSummaryDto> getArchivedTransactions(String ownerUid, String month) throws IOException {
+        YearMonth yearMonth;
+        try {
+            yearMonth = YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid month, expected yyyy-MM");
+        }
+        return transactionArchiveStore.read(yearMonth, ownerUid);
+    }
+
+    /**
+    What the transfers count towards the limits: their amounts in the reference currency,
+    at the current rate snapshot, plus the async transfers of the user still waiting in the
+    queue, so queueing cannot get around the limits. Items without an amount or a sender
+    account are skipped, the transfer itself rejects them.
+    Pass the result to both isWithinDailyLimit and isWithinWeeklyLimit.
+     */
+    public BigDecimal limitAmount(String uid, List<TransferDto> transfers) {
+        ExchangeRateService.RateSnapshot snapshot = exchangeRateService.getSnapshot();
+        BigDecimal total = BigDecimal.ZERO;
+        for (TransferDto transfer : transfers) {
+            if (transfer.getAmount() != null && transfer.getSenderAccountCode() != null) {
+                total = total.add(spendCounterService.toReference(snapshot, transfer.getAmount(), transfer.getSenderAccountCode()));
+            }
+        }
+        for (Object[] row : queuedTransferRepository.sumPendingByCurrency(uid)) {
+            total = total.add(spendCounterService.toReference(snapshot, (BigDecimal) row[1], (String) row[0]));
+        }
+        return total;
     }
 
     //Checks if a transaction keeps the user within their daily transfer limit.
-    public boolean isWithinDailyLimit(String username, BigDecimal amount) {
-        LocalDateTime since = LocalDateTime.now().minusDays(1);
-        BigDecimal totalSent = transactionRepository.sumSentAmountSince(username, since);
-        return totalSent.add(amount).compareTo(DAILY_LIMIT) <= 0;
+    //This is the early check; the transfer itself enforces the limit under the spend bucket lock.
+    public boolean isWithinDailyLimit(String uid, BigDecimal limitAmount) {
+        BigDecimal totalSent = spendCounterService.spentInLast(uid, SpendCounterService.DAY_HOURS);
+        return totalSent.add(limitAmount).compareTo(DAILY_LIMIT) <= 0;
     }
 
     //Checks if a transaction keeps the user within their weekly transfer limit
-    public boolean isWithinWeeklyLimit(String username, BigDecimal amount) {
-        LocalDateTime since = LocalDateTime.now().minusWeeks(1);
-        BigDecimal totalSent = transactionRepository.sumSentAmountSince(username, since);
-        return totalSent.add(amount).compareTo(WEEKLY_LIMIT) <= 0;
+    public boolean isWithinWeeklyLimit(String uid, BigDecimal limitAmount) {
+        BigDecimal totalSent = spendCounterService.spentInLast(uid, SpendCounterService.WEEK_HOURS);
+        return totalSent.add(limitAmount).compareTo(WEEKLY_LIMIT) <= 0;
     }
-}
\ No newline at end of file
+}
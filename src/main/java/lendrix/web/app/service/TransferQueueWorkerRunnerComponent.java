@@ -0,0 +1,30 @@
+package lendrix.web.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TransferQueueWorkerRunnerComponent implements CommandLineRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(TransferQueueWorkerRunnerComponent.class);
+    private final AsyncTransferService asyncTransferService;
+
+    @Value("${transfers.async.enabled:true}")
+    private boolean enabled;
+
+    public TransferQueueWorkerRunnerComponent(AsyncTransferService asyncTransferService) {
+        this.asyncTransferService = asyncTransferService;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (!enabled) {
+            logger.info("Async transfer workers are disabled");
+            return;
+        }
+        asyncTransferService.startWorkers();
+    }
+}
@@ -0,0 +1,40 @@
+package lendrix.web.app.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lendrix.web.app.entity.User;
+
+/**
+Entity listener of User (created by Hibernate through the Spring bean container) that
+drops the user from the principal cache whenever the row changes.
+The entry is dropped at flush and again after commit, so a request that reloads the
+user while the change is still uncommitted cannot keep the old roles or password cached.
+ */
+@Component
+public class UserChangeListener {
+
+    private final PrincipalCache principalCache;
+
+    public UserChangeListener(PrincipalCache principalCache) {
+        this.principalCache = principalCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void userChanged(User user) {
+        String username = user.getUsername();
+        principalCache.invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    principalCache.invalidate(username);
+                }
+            });
+        }
+    }
+}
@@ -1,16 +1,18 @@
 package lendrix.web.app.service.helper;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.List;
-import java.util.Map;
 
 import javax.naming.OperationNotSupportedException;
 
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
 import lendrix.web.app.dto.AccountDto;
 import lendrix.web.app.dto.ConvertDto;
 import lendrix.web.app.entity.Account;
+import lendrix.web.app.entity.Card;
 import lendrix.web.app.entity.Transaction;
 import lendrix.web.app.entity.User;
 import lendrix.web.app.enums.Status;
@@ -18,6 +20,13 @@ import lendrix.web.app.enums.Type;
 import lendrix.web.app.repository.AccountRepository;
 import lendrix.web.app.repository.TransactionRepository;
 import lendrix.web.app.service.ExchangeRateService;
+import lendrix.web.app.service.LedgerService;
+import lendrix.web.app.service.LedgerService.Journal;
+import lendrix.web.app.service.NotificationOutboxService;
+import lendrix.web.app.service.SpendCounterService;
+import lendrix.web.app.service.SpendingRollupService;
+import lendrix.web.app.util.CurrencyRegistry;
+import lendrix.web.app.util.Money;
 import lendrix.web.app.util.RandomUtil;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -30,43 +39,17 @@ public class AccountHelper {
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
     private final ExchangeRateService exchangeRateService;
+    private final AccountLockManager accountLockManager;
+    private final LedgerService ledgerService;
+    private final HotAccountHelper hotAccountHelper;
+    private final NotificationOutboxService notificationOutboxService;
+    private final SpendCounterService spendCounterService;
+    private final SpendingRollupService spendingRollupService;
 
-    private static final Map<String, String> CURRENCIES = Map.ofEntries(
-        Map.entry("GHS", "Ghanaian Cedi"),
-        Map.entry("USD", "United States Dollar"),
-        Map.entry("EUR", "Euro"),
-        Map.entry("GBP", "British Pound Sterling"),
-        Map.entry("JPY", "Japanese Yen"),
-        Map.entry("CHF", "Swiss Franc"),
-        Map.entry("CAD", "Canadian Dollar"),
-        Map.entry("AUD", "Australian Dollar"),
-        Map.entry("NZD", "New Zealand Dollar"),
-        Map.entry("CNY", "Chinese Yuan"),
-        Map.entry("HKD", "Hong Kong Dollar"),
-        Map.entry("SGD", "Singapore Dollar"),
-        Map.entry("INR", "Indian Rupee"),
-        Map.entry("ZAR", "South African Rand"),
-        Map.entry("BRL", "Brazilian Real"),
-        Map.entry("RUB", "Russian Ruble"),
-        Map.entry("KRW", "South Korean Won"),
-        Map.entry("SEK", "Swedish Krona"),
-        Map.entry("NOK", "Norwegian Krone"),
-        Map.entry("DKK", "Danish Krone"),
-        Map.entry("MYR", "Malaysian Ringgit"),
-        Map.entry("PHP", "Philippine Peso"),
-        Map.entry("IDR", "Indonesian Rupiah"),
-        Map.entry("THB", "Thai Baht"),
-        Map.entry("MXN", "Mexican Peso"),
-        Map.entry("TRY", "Turkish Lira"),
-        Map.entry("AED", "United Arab Emirates Dirham"),
-        Map.entry("SAR", "Saudi Riyal"),
-        Map.entry("EGP", "Egyptian Pound"),
-        Map.entry("NGN", "Nigerian Naira"),
-        Map.entry("KES", "Kenyan Shilling"),
-        Map.entry("TZS", "Tanzanian Shilling"),
-        Map.entry("UGX", "Ugandan Shilling")
-    );
+    private static final long TRANSFER_FEE_BPS = 100;   // 1%
+    private static final long CONVERSION_FEE_BPS = 100; // 1%
 
+    @Transactional(rollbackFor = Exception.class)
     public Account createAccount(AccountDto accountDto, User user) throws Exception {
         validateAccountNonExistsForUser(accountDto.getCode(), user.getUid());
 
@@ -82,30 +65,81 @@ public class AccountHelper {
                 .owner(user)
                 .code(accountDto.getCode())
                 .symbol(accountDto.getSymbol())
-                .label(CURRENCIES.getOrDefault(accountDto.getCode(), "Unknown Currency"))
+                .label(CurrencyRegistry.name(accountDto.getCode()))
                 .build();
 
-        return accountRepository.save(account);
+        account = accountRepository.save(account);
+        ledgerService.post(new Journal()
+                .move(account.getCode(), LedgerService.OPENING, LedgerService.ledgerAccount(account), account.getBalance()));
+        return account;
     }
 
     public Transaction performTransfer(Account senderAccount, Account receiverAccount, BigDecimal amount, User user) {
-        BigDecimal fee = amount.multiply(BigDecimal.valueOf(0.01));
-        BigDecimal totalDeduction = amount.add(fee);
+        return accountLockManager.withLockedAccounts(accountsToLock(senderAccount, receiverAccount), locked ->
+                applyTransfer(locked.get(senderAccount.getAccountid()),
+                              locked.getOrDefault(receiverAccount.getAccountid(), receiverAccount), amount, user));
+    }
+
+    /**
+    Accounts a transfer has to lock: the sender always, the receiver unless it is a
+    hot account, which takes the credit into a balance slot instead of its row.
+     */
+    public List<Account> accountsToLock(Account senderAccount, Account receiverAccount) {
+        return receiverAccount.isHot() ? List.of(senderAccount) : List.of(senderAccount, receiverAccount);
+    }
 
-        if (senderAccount.getBalance().compareTo(totalDeduction) < 0) {
+    /**
+    Moves the money between two accounts; the sender (and a non-hot receiver) must
+    already be locked by the caller.
+    Fails before changing any balance if the sender cannot cover amount and fee, if
+    the transfer would take the sender past the daily or weekly limit (IllegalArgumentException),
+    or if a hot receiver has left hot mode since it was read (IllegalStateException).
+     */
+    public Transaction applyTransfer(Account sender, Account receiver, BigDecimal amount, User user) {
+        //minor units from here on; amounts become decimals again only where they are stored
+        Money sent = toMoney(amount, sender.getCode());
+        Money received = toMoney(amount, receiver.getCode());
+        Money fee = sent.basisPoints(TRANSFER_FEE_BPS, RoundingMode.HALF_UP);
+        Money totalDeduction = sent.plus(fee);
+
+        if (ledgerService.balanceOf(sender).compareTo(totalDeduction) < 0) {
             throw new IllegalArgumentException("Insufficient balance including fees");
         }
+        //a hot receiver is not locked and may have left hot mode since it was read
+        boolean creditSlot = receiver.isHot() && receiver != sender;
+        int receiverSlot = -1;
+        if (creditSlot) {
+            receiverSlot = hotAccountHelper.lockSlotForTransfer(sender, receiver, totalDeduction.toBigDecimal());
+        } else {
+            hotAccountHelper.sweepIfShort(sender, totalDeduction.toBigDecimal());
+        }
+        Money senderBalance = balanceOf(sender);
+        spendCounterService.record(sender.getOwner(), sent);
+
+        sender.setBalance(senderBalance.minus(totalDeduction).toBigDecimal());
+        if (creditSlot) {
+            hotAccountHelper.credit(receiver, receiverSlot, received.toBigDecimal());
+            accountRepository.save(sender);
+        } else {
+            receiver.setBalance(balanceOf(receiver).plus(received).toBigDecimal());
+            accountRepository.saveAll(List.of(sender, receiver));
+        }
 
-        senderAccount.setBalance(senderAccount.getBalance().subtract(totalDeduction));
-        receiverAccount.setBalance(receiverAccount.getBalance().add(amount));
-
-        accountRepository.saveAll(List.of(senderAccount, receiverAccount));
+        ledgerService.post(new Journal()
+                .exchange(LedgerService.ledgerAccount(sender), sent, LedgerService.ledgerAccount(receiver), received)
+                .move(LedgerService.ledgerAccount(sender), LedgerService.FEES, fee));
 
-        Transaction senderTransaction = createAccountTransaction(1, Type.WITHDRAW, fee, user, senderAccount, amount, "Transfer to account " + receiverAccount.getAccountNumber());
-        Transaction receiverTransaction = createAccountTransaction(1, Type.DEPOSIT, BigDecimal.ZERO, user, receiverAccount, amount, "Received from account " + senderAccount.getAccountNumber());
+        Transaction senderTransaction = createAccountTransaction(1, Type.WITHDRAW, fee.toBigDecimal(), user, sender, sent.toBigDecimal(),
+                "Transfer to account " + receiver.getAccountNumber(), String.valueOf(receiver.getAccountNumber()), null);
+        //each side's row belongs to the owner of its account, so it shows in their history and not the sender's
+        Transaction receiverTransaction = createAccountTransaction(1, Type.DEPOSIT, BigDecimal.ZERO, receiver.getOwner(), receiver,
+                received.toBigDecimal(), "Received from account " + sender.getAccountNumber(), String.valueOf(sender.getAccountNumber()), null);
 
         transactionRepository.save(receiverTransaction);
 
+        notificationOutboxService.enqueueInApp(receiver.getOwner(),
+                "You received " + received + " from account " + sender.getAccountNumber());
+
         return senderTransaction;
     }
 
@@ -122,17 +156,48 @@ public class AccountHelper {
     }
 
     public void validateSufficientFunds(Account account, BigDecimal amount) throws OperationNotSupportedException {
-        if (account.getBalance().compareTo(amount) < 0) {
+        if (ledgerService.balanceOf(account).toBigDecimal().compareTo(amount) < 0) {
             throw new OperationNotSupportedException("Insufficient funds in the account");
         }
     }
 
-    public void validateAmount(double amount) {
-        if (amount <= 0) {
+    public void validateAmount(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
             throw new IllegalArgumentException("Invalid amount.");
         }
     }
 
+    /**
+    Amount in the currency's minor units; amounts finer than the minor unit are rejected.
+     */
+    public Money toMoney(BigDecimal amount, String currency) {
+        try {
+            return Money.of(amount, currency, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount has more decimal places than " + currency + " allows");
+        }
+    }
+
+    /**
+    The account balance in minor units. Every balance write goes through Money, so a stored
+    balance is always whole minor units (V5 migration fixed the ones written before).
+     */
+    public static Money balanceOf(Account account) {
+        return storedBalance(account.getBalance(), account.getCode(), "account " + account.getAccountNumber());
+    }
+
+    public static Money balanceOf(Card card) {
+        return storedBalance(card.getBalance(), card.getCurrency(), "card " + card.getCardid());
+    }
+
+    private static Money storedBalance(BigDecimal balance, String currency, String label) {
+        try {
+            return Money.of(balance, currency, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException("Balance of " + label + " is not in whole " + currency + " minor units");
+        }
+    }
+
     public void validateDifferentCurrencyType(ConvertDto convertDto) {
         if (convertDto.getFromCurrency().equals(convertDto.getToCurrency())) {
             throw new IllegalArgumentException("Cannot convert between the same currency.");
@@ -154,37 +219,78 @@ public class AccountHelper {
         Account fromAccount = accountRepository.findByCodeAndOwnerUid(convertDto.getFromCurrency(), uid)
             .orElseThrow(() -> new Exception("From account not found"));
 
-        validateSufficientFunds(fromAccount, BigDecimal.valueOf(convertDto.getAmount()));
+        validateSufficientFunds(fromAccount, convertDto.getAmount());
     }
 
-    public Transaction convertCurrency(ConvertDto convertDto, User user) throws Exception {
-        validateConversion(convertDto, user.getUid());
+    /**
+    Amounts and rate of one conversion, fixed when it is priced.
+     */
+    public record ConversionTerms(String fromCurrency, String toCurrency, Money send, Money fee, Money received,
+                                  double rate, long rateVersion) {}
+
+    /**
+    Prices a conversion at the current rate snapshot without moving any money.
+     */
+    public ConversionTerms priceConversion(ConvertDto convertDto, String uid) throws Exception {
+        validateConversion(convertDto, uid);
+
+        //one cross-rate lookup in one snapshot, whose version is recorded on the transactions
+        ExchangeRateService.RateSnapshot rates = exchangeRateService.getSnapshot();
+        double crossRate = rates.crossRate(convertDto.getFromCurrency(), convertDto.getToCurrency());
+
+        //fee and converted amount in minor units; the customer is never credited a fraction of a unit
+        Money send = toMoney(convertDto.getAmount(), convertDto.getFromCurrency());
+        Money fee = send.basisPoints(CONVERSION_FEE_BPS, RoundingMode.HALF_UP);
+        Money received = send.convert(crossRate, convertDto.getToCurrency(), RoundingMode.DOWN);
+
+        return new ConversionTerms(convertDto.getFromCurrency(), convertDto.getToCurrency(),
+                send, fee, received, crossRate, rates.version());
+    }
 
-        var rates = exchangeRateService.getRates();
-        double fromRate = rates.get(convertDto.getFromCurrency());
-        double toRate = rates.get(convertDto.getToCurrency());
-        double computedAmount = (toRate / fromRate) * convertDto.getAmount();
+    public Transaction convertCurrency(ConvertDto convertDto, User user) throws Exception {
+        return convertCurrency(priceConversion(convertDto, user.getUid()), user);
+    }
 
-        Account fromAccount = accountRepository.findByCodeAndOwnerUid(convertDto.getFromCurrency(), user.getUid())
+    /**
+    Executes a conversion on previously priced terms, e.g. from a quote.
+     */
+    public Transaction convertCurrency(ConversionTerms terms, User user) throws Exception {
+        Account fromAccount = accountRepository.findByCodeAndOwnerUid(terms.fromCurrency(), user.getUid())
             .orElseThrow(() -> new Exception("From account not found"));
-        Account toAccount = accountRepository.findByCodeAndOwnerUid(convertDto.getToCurrency(), user.getUid())
+        Account toAccount = accountRepository.findByCodeAndOwnerUid(terms.toCurrency(), user.getUid())
             .orElseThrow(() -> new Exception("To account not found"));
 
-        BigDecimal sendAmount = BigDecimal.valueOf(convertDto.getAmount());
-        BigDecimal receivedAmount = BigDecimal.valueOf(computedAmount);
-        BigDecimal conversionFee = sendAmount.multiply(BigDecimal.valueOf(0.01));
+        Money debit = terms.send().plus(terms.fee());
+
+        return accountLockManager.withLockedAccounts(List.of(fromAccount, toAccount), locked -> {
+            Account from = locked.get(fromAccount.getAccountid());
+            Account to = locked.get(toAccount.getAccountid());
+
+            //Re-check under the lock, the balance may have moved since the conversion was priced
+            if (ledgerService.balanceOf(from).compareTo(debit) < 0) {
+                throw new IllegalArgumentException("Insufficient funds in the account");
+            }
+            hotAccountHelper.sweepIfShort(from, debit.toBigDecimal());
+            Money fromBalance = balanceOf(from);
+
+            from.setBalance(fromBalance.minus(debit).toBigDecimal());
+            to.setBalance(balanceOf(to).plus(terms.received()).toBigDecimal());
 
-        fromAccount.setBalance(fromAccount.getBalance().subtract(sendAmount.add(conversionFee)));
-        toAccount.setBalance(toAccount.getBalance().add(receivedAmount));
+            accountRepository.saveAll(List.of(from, to));
 
-        accountRepository.saveAll(List.of(fromAccount, toAccount));
+            ledgerService.post(new Journal()
+                    .exchange(LedgerService.ledgerAccount(from), terms.send(), LedgerService.ledgerAccount(to), terms.received())
+                    .move(LedgerService.ledgerAccount(from), LedgerService.FEES, terms.fee()));
 
-        Transaction fromTransaction = createAccountTransaction(1, Type.CONVERSION, conversionFee, user, fromAccount, sendAmount, "Currency conversion");
-        Transaction toTransaction = createAccountTransaction(1, Type.DEPOSIT, BigDecimal.ZERO, user, toAccount, receivedAmount, "Converted currency");
+            Transaction fromTransaction = createAccountTransaction(1, Type.CONVERSION, terms.fee().toBigDecimal(), user, from,
+                    terms.send().toBigDecimal(), "Currency conversion to " + to.getCode(), String.valueOf(to.getAccountNumber()), terms.rateVersion());
+            Transaction toTransaction = createAccountTransaction(1, Type.DEPOSIT, BigDecimal.ZERO, user, to,
+                    terms.received().toBigDecimal(), "Converted currency from " + from.getCode(), String.valueOf(from.getAccountNumber()), terms.rateVersion());
 
-        transactionRepository.save(toTransaction);
+            transactionRepository.save(toTransaction);
 
-        return fromTransaction;
+            return fromTransaction;
+        });
     }
 
     public Transaction createAccountTransaction(
@@ -195,6 +301,20 @@ public class AccountHelper {
             Account account,
             BigDecimal amount,
             String description
+    ) {
+        return createAccountTransaction(status, type, txFee, user, account, amount, description, null, null);
+    }
+
+    public Transaction createAccountTransaction(
+            int status,
+            Type type,
+            BigDecimal txFee,
+            User user,
+            Account account,
+            BigDecimal amount,
+            String description,
+            String counterparty,
+            Long rateVersion
     ) {
         Transaction tx = Transaction.builder()
                 .account(account)
@@ -203,31 +323,43 @@ public class AccountHelper {
                 .txFee(txFee)
                 .status(status == 1 ? Status.COMPLETED : Status.FAILED)
                 .type(type)
+                .rateVersion(rateVersion)
+                .description(description)
+                .counterparty(counterparty)
                 .build();
-        return transactionRepository.save(tx);
+        Transaction saved = transactionRepository.save(tx);
+        spendingRollupService.record(tx);
+        return saved;
     }
 
-    public Transaction depositToAccount(Account account, double amount, User user) {
+    public Transaction depositToAccount(Account account, BigDecimal amount, User user) {
     validateAmount(amount); // this ensure amount is > 0
 
-    BigDecimal depositAmount = BigDecimal.valueOf(amount);
-
-    //Add to account balance
-    account.setBalance(account.getBalance().add(depositAmount));
-    accountRepository.save(account);
-
-    //Create a DEPOSIT transaction
-    Transaction depositTransaction = createAccountTransaction(
-            1,
-            Type.DEPOSIT,
-            BigDecimal.ZERO,   // No fees for deposits
-            user,
-            account,
-            depositAmount,
-            "Deposit of " + amount + " into " + account.getCode() + " account"
-    );
-
-    return depositTransaction;
+    Money depositAmount = toMoney(amount, account.getCode());
+
+    return accountLockManager.withLockedAccounts(List.of(account), locked -> {
+        Account target = locked.get(account.getAccountid());
+
+        //Add to account balance
+        target.setBalance(balanceOf(target).plus(depositAmount).toBigDecimal());
+        accountRepository.save(target);
+
+        ledgerService.post(new Journal()
+                .move(LedgerService.EXTERNAL, LedgerService.ledgerAccount(target), depositAmount));
+
+        //Create a DEPOSIT transaction
+        return createAccountTransaction(
+                1,
+                Type.DEPOSIT,
+                BigDecimal.ZERO,   // No fees for deposits
+                user,
+                target,
+                depositAmount.toBigDecimal(),
+                "Deposit of " + amount + " into " + target.getCode() + " account",
+                "External",
+                null
+        );
+    });
 }
 
 }
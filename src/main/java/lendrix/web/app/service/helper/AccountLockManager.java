@@ -0,0 +1,133 @@
+package lendrix.web.app.service.helper;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lendrix.web.app.entity.Account;
+
+/**
+Serializes balance changes on accounts.
+Locks are always taken in account id order (first an in-JVM stripe, then the
+row with SELECT ... FOR UPDATE) so two transfers touching the same pair of
+accounts in opposite directions can never deadlock.
+
+That order only holds within one call: row locks last until the transaction ends, so a
+second call in the same transaction could lock a lower id after a higher one. A thread
+holding account locks is therefore refused another withLockedAccounts until its
+transaction completes; callers lock every account they need in a single call. Running
+inside a caller's transaction that has no account locks yet (e.g. an idempotent request)
+is fine.
+ */
+@Component
+public class AccountLockManager {
+
+    private static final int STRIPES = 256;
+
+    //set while this thread holds account row locks, cleared when the transaction holding them completes
+    private static final ThreadLocal<Boolean> HOLDING_LOCKS = ThreadLocal.withInitial(() -> false);
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public AccountLockManager(EntityManager entityManager, TransactionTemplate transactionTemplate) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+    Locks the given accounts and runs the work inside a transaction.
+    The work receives freshly re-read, row-locked accounts keyed by account id;
+    it must use those instead of the (possibly stale) instances passed in.
+     */
+    public <T> T withLockedAccounts(Collection<Account> accounts, Function<Map<String, Account>, T> work) {
+        return withLockedAccounts(accounts, LockModeType.PESSIMISTIC_WRITE, work);
+    }
+
+    /**
+    Same as above with an explicit row lock mode, e.g. PESSIMISTIC_FORCE_INCREMENT to
+    also bump the version so optimistic writers that read the account earlier fail.
+     */
+    public <T> T withLockedAccounts(Collection<Account> accounts, LockModeType lockMode,
+                                    Function<Map<String, Account>, T> work) {
+        if (HOLDING_LOCKS.get()) {
+            throw new IllegalStateException("Accounts are already locked in this transaction; lock them all in one call");
+        }
+        Map<String, Account> byId = new TreeMap<>();
+        for (Account account : accounts) {
+            byId.putIfAbsent(account.getAccountid(), account);
+        }
+
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        for (String accountId : byId.keySet()) {
+            stripeIndexes.add(stripeFor(accountId));
+        }
+
+        for (int index : stripeIndexes) {
+            stripes[index].lock();
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                holdLocksUntilCompletion();
+                return work.apply(lockRows(byId, lockMode));
+            });
+        } finally {
+            //still set only if we joined a caller's transaction, which clears it when it completes
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                HOLDING_LOCKS.remove();
+            }
+            for (int index : stripeIndexes.descendingSet()) {
+                stripes[index].unlock();
+            }
+        }
+    }
+
+    private static void holdLocksUntilCompletion() {
+        HOLDING_LOCKS.set(true);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    HOLDING_LOCKS.remove();
+                }
+            });
+        }
+    }
+
+    //Takes the row locks in id order and refreshes each account with the committed balance
+    private Map<String, Account> lockRows(Map<String, Account> byId, LockModeType lockMode) {
+        Map<String, Account> locked = new LinkedHashMap<>();
+        for (Map.Entry<String, Account> entry : byId.entrySet()) {
+            Account account = entry.getValue();
+            if (entityManager.contains(account)) {
+                entityManager.refresh(account, lockMode);
+            } else {
+                account = entityManager.find(Account.class, entry.getKey(), lockMode);
+                if (account == null) {
+                    throw new IllegalArgumentException("Account not found: " + entry.getKey());
+                }
+            }
+            locked.put(entry.getKey(), account);
+        }
+        return locked;
+    }
+
+    private int stripeFor(String accountId) {
+        return Math.floorMod(accountId.hashCode(), STRIPES);
+    }
+}
@@ -0,0 +1,150 @@
+package lendrix.web.app.service.helper;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lendrix.web.app.entity.Account;
+import lendrix.web.app.entity.AccountBalanceSlot;
+import lendrix.web.app.repository.AccountBalanceSlotRepository;
+import lendrix.web.app.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Sub-balance slots for hot accounts (merchants, payroll pools).
+Credits go to a random slot without locking the account row; debits and the
+consolidation job sweep the slots back into Account.balance under the account lock.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HotAccountHelper {
+
+    private final AccountBalanceSlotRepository slotRepository;
+    private final AccountRepository accountRepository;
+    private final AccountLockManager accountLockManager;
+
+    @Value("${accounts.hot.slot-count:8}")
+    private int slotCount;
+
+    /**
+    Picks a random slot of the account and locks it until the caller's transaction ends,
+    so turning hot mode off (which locks every slot) waits for the credit.
+    The account may be a copy read before the transfer started: if hot mode was turned off
+    since, this fails with IllegalStateException before anything is written.
+     */
+    public int lockSlot(Account account) {
+        int slot = ThreadLocalRandom.current().nextInt(slotCount);
+        if (slotRepository.lockSlot(account.getAccountid(), slot).isEmpty()) {
+            throw new IllegalStateException("Account " + account.getAccountNumber() + " is no longer a hot account, retry the transfer");
+        }
+        return slot;
+    }
+
+    /**
+    Adds the amount to a slot locked with lockSlot. Must run inside the caller's transaction,
+    before any ledger posting for the account (see LedgerService checkpoints).
+     */
+    public void credit(Account account, int slot, BigDecimal amount) {
+        if (slotRepository.credit(account.getAccountid(), slot, amount) == 0) {
+            throw new IllegalStateException("Hot account " + account.getAccountNumber() + " has no balance slots");
+        }
+    }
+
+    /**
+    Sweeps a locked hot account whose balance alone does not cover amount, so a debit
+    sees the credits still waiting in its slots.
+     */
+    public void sweepIfShort(Account lockedAccount, BigDecimal amount) {
+        if (lockedAccount.isHot() && lockedAccount.getBalance().compareTo(amount) < 0) {
+            sweep(lockedAccount);
+        }
+    }
+
+    /**
+    Readies a transfer from a locked sender to a hot receiver: sweeps the sender if its
+    balance alone does not cover debit and locks a slot of the receiver, returning its index.
+    Slot locks are taken in account id order like the row locks, so two hot accounts paying
+    each other at the same time cannot each wait on the other's slots.
+     */
+    public int lockSlotForTransfer(Account lockedSender, Account receiver, BigDecimal debit) {
+        if (receiver.getAccountid().compareTo(lockedSender.getAccountid()) < 0) {
+            int slot = lockSlot(receiver);
+            sweepIfShort(lockedSender, debit);
+            return slot;
+        }
+        sweepIfShort(lockedSender, debit);
+        return lockSlot(receiver);
+    }
+
+    /**
+    Moves everything held in the slots into the account balance.
+    The account must be locked by the caller; the slot rows are locked here,
+    which also waits out any credit still in flight.
+     */
+    public BigDecimal sweep(Account lockedAccount) {
+        BigDecimal swept = BigDecimal.ZERO;
+        for (AccountBalanceSlot slot : slotRepository.lockAllByAccountId(lockedAccount.getAccountid())) {
+            if (slot.getBalance().signum() != 0) {
+                swept = swept.add(slot.getBalance());
+                slot.setBalance(BigDecimal.ZERO);
+            }
+        }
+        if (swept.signum() != 0) {
+            lockedAccount.setBalance(lockedAccount.getBalance().add(swept));
+            accountRepository.save(lockedAccount);
+        }
+        return swept;
+    }
+
+    /**
+    Turns hot mode on or off. Turning it off sweeps and removes the slots.
+     */
+    public Account setHotMode(Account account, boolean hot) {
+        return accountLockManager.withLockedAccounts(List.of(account), locked -> {
+            Account target = locked.get(account.getAccountid());
+            if (target.isHot() == hot) {
+                return target;
+            }
+
+            if (hot) {
+                for (int i = 0; i < slotCount; i++) {
+                    slotRepository.save(AccountBalanceSlot.builder()
+                            .account(target)
+                            .slotIndex(i)
+                            .balance(BigDecimal.ZERO)
+                            .build());
+                }
+            } else {
+                sweep(target);
+                slotRepository.deleteAllByAccountId(target.getAccountid());
+            }
+
+            target.setHot(hot);
+            log.info("Hot mode {} for account {}", hot ? "enabled" : "disabled", target.getAccountNumber());
+            return accountRepository.save(target);
+        });
+    }
+
+    /**
+    Folds the slots of every hot account back into its balance.
+     */
+    public void consolidate() {
+        int consolidated = 0;
+        for (String accountId : slotRepository.findAccountIdsWithSlotBalance()) {
+            Account account = accountRepository.findById(accountId).orElse(null);
+            if (account == null) {
+                continue;
+            }
+            accountLockManager.withLockedAccounts(List.of(account), locked -> sweep(locked.get(accountId)));
+            consolidated++;
+        }
+        if (consolidated > 0) {
+            log.info("Consolidated balance slots of {} hot accounts", consolidated);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package lendrix.web.app.service.helper;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+Re-runs a unit of work that lost an optimistic version check.
+Each attempt must open its own transaction; between attempts the policy waits a
+random ("full jitter") delay that grows exponentially up to a cap.
+ */
+@Component
+@Slf4j
+public class OptimisticRetryPolicy {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${retry.optimistic.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${retry.optimistic.base-delay-ms:10}")
+    private long baseDelayMs;
+
+    @Value("${retry.optimistic.max-delay-ms:200}")
+    private long maxDelayMs;
+
+    public OptimisticRetryPolicy(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+    Runs the attempt until it commits or maxAttempts is reached.
+    The key (an account or card id) is only used to log entities that keep conflicting,
+    the candidates for pessimistic locking.
+     */
+    public <T> T execute(String operation, String key, Supplier<T> attempt) {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                T result = attempt.get();
+                attempts(operation).record(attemptNumber);
+                if (attemptNumber > 2) {
+                    log.warn("{} on {} needed {} attempts", operation, key, attemptNumber);
+                }
+                return result;
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                if (attemptNumber >= maxAttempts) {
+                    Counter.builder("optimistic.lock.exhausted").tag("operation", operation)
+                            .description("Operations that gave up after the last optimistic retry")
+                            .register(meterRegistry).increment();
+                    log.warn("{} on {} still conflicting after {} attempts, consider escalating to pessimistic locking",
+                            operation, key, attemptNumber);
+                    throw e;
+                }
+                Counter.builder("optimistic.lock.retries").tag("operation", operation)
+                        .description("Attempts re-run after losing an optimistic version check")
+                        .register(meterRegistry).increment();
+                backoff(operation, attemptNumber);
+            }
+        }
+    }
+
+    private DistributionSummary attempts(String operation) {
+        return DistributionSummary.builder("optimistic.lock.attempts").tag("operation", operation)
+                .description("Attempts needed per successful operation")
+                .register(meterRegistry);
+    }
+
+    private void backoff(String operation, int attemptNumber) {
+        try {
+            Thread.sleep(delayMs(attemptNumber));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry " + operation);
+        }
+    }
+
+    //Full jitter: anywhere between 0 and base * 2^(attempt - 1), capped at maxDelayMs
+    long delayMs(int attemptNumber) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attemptNumber - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
@@ -0,0 +1,89 @@
+package lendrix.web.app.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+The currencies Lendrix supports, each with a dense ordinal (0..size-1) so per-currency
+data can live in flat primitive arrays instead of maps.
+Ordinals follow declaration order and are only meaningful within one running process.
+ */
+public final class CurrencyRegistry {
+
+    private static final String[][] CURRENCIES = {
+        {"GHS", "Ghanaian Cedi"},
+        {"USD", "United States Dollar"},
+        {"EUR", "Euro"},
+        {"GBP", "British Pound Sterling"},
+        {"JPY", "Japanese Yen"},
+        {"CHF", "Swiss Franc"},
+        {"CAD", "Canadian Dollar"},
+        {"AUD", "Australian Dollar"},
+        {"NZD", "New Zealand Dollar"},
+        {"CNY", "Chinese Yuan"},
+        {"HKD", "Hong Kong Dollar"},
+        {"SGD", "Singapore Dollar"},
+        {"INR", "Indian Rupee"},
+        {"ZAR", "South African Rand"},
+        {"BRL", "Brazilian Real"},
+        {"RUB", "Russian Ruble"},
+        {"KRW", "South Korean Won"},
+        {"SEK", "Swedish Krona"},
+        {"NOK", "Norwegian Krone"},
+        {"DKK", "Danish Krone"},
+        {"MYR", "Malaysian Ringgit"},
+        {"PHP", "Philippine Peso"},
+        {"IDR", "Indonesian Rupiah"},
+        {"THB", "Thai Baht"},
+        {"MXN", "Mexican Peso"},
+        {"TRY", "Turkish Lira"},
+        {"AED", "United Arab Emirates Dirham"},
+        {"SAR", "Saudi Riyal"},
+        {"EGP", "Egyptian Pound"},
+        {"NGN", "Nigerian Naira"},
+        {"KES", "Kenyan Shilling"},
+        {"TZS", "Tanzanian Shilling"},
+        {"UGX", "Ugandan Shilling"}
+    };
+
+    private static final List<String> CODES;
+    private static final Map<String, Integer> ORDINALS = new HashMap<>();
+
+    static {
+        String[] codes = new String[CURRENCIES.length];
+        for (int i = 0; i < CURRENCIES.length; i++) {
+            codes[i] = CURRENCIES[i][0];
+            ORDINALS.put(codes[i], i);
+        }
+        CODES = List.of(codes);
+    }
+
+    private CurrencyRegistry() {
+    }
+
+    public static int size() {
+        return CURRENCIES.length;
+    }
+
+    public static List<String> codes() {
+        return CODES;
+    }
+
+    /**
+    Ordinal of the code, or -1 when the currency is not supported.
+     */
+    public static int ordinal(String code) {
+        Integer ordinal = code == null ? null : ORDINALS.get(code);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    public static String code(int ordinal) {
+        return CURRENCIES[ordinal][0];
+    }
+
+    public static String name(String code) {
+        int ordinal = ordinal(code);
+        return ordinal < 0 ? "Unknown Currency" : CURRENCIES[ordinal][1];
+    }
+}
@@ -0,0 +1,77 @@
+package lendrix.web.app.util;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+Bounded in-memory cache whose entries expire after a time-to-live.
+Reads are lock-free; when the cache grows past its bound, expired entries are
+dropped first and then the entries closest to expiry.
+ */
+public class ExpiringCache<K, V> {
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    public ExpiringCache(int maxEntries, Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() - System.nanoTime() <= 0) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public void put(K key, V value) {
+        put(key, value, ttlNanos);
+    }
+
+    public void put(K key, V value, long ttlNanos) {
+        entries.put(key, new Entry<>(value, System.nanoTime() + Math.min(ttlNanos, this.ttlNanos)));
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    public V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry == null || entry.expiresAt() - System.nanoTime() <= 0 ? null : entry.value();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private synchronized void evict() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        long now = System.nanoTime();
+        entries.entrySet().removeIf(e -> e.getValue().expiresAt() - now <= 0);
+
+        //still full: drop the entries closest to expiry, leaving some headroom so this stays rare
+        int excess = entries.size() - maxEntries * 9 / 10;
+        if (excess > 0) {
+            entries.entrySet().stream()
+                    .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt() - now))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(entries::remove);
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
@@ -0,0 +1,191 @@
+package lendrix.web.app.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+An amount of money held as a long count of minor units (cents, pence, whole yen ...).
+The scale comes from the currency (ISO 4217 fraction digits, 2 for codes the JDK does
+not know) and every operation that can lose precision takes an explicit RoundingMode.
+Arithmetic is plain long math; only the result object is allocated.
+ */
+public final class Money implements Comparable<Money> {
+
+    private static final int DEFAULT_SCALE = 2;
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    //beyond 2^53 a double no longer holds every integer, so conversions would not be exact
+    private static final double MAX_EXACT_DOUBLE = 9_007_199_254_740_992d;
+    private static final Map<String, Integer> SCALES = new ConcurrentHashMap<>();
+
+    private final long minorUnits;
+    private final String currency;
+    private final int scale;
+
+    private Money(long minorUnits, String currency, int scale) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+        this.scale = scale;
+    }
+
+    public static Money ofMinor(long minorUnits, String currency) {
+        return new Money(minorUnits, currency, scaleOf(currency));
+    }
+
+    public static Money zero(String currency) {
+        return ofMinor(0, currency);
+    }
+
+    /**
+    Converts a decimal amount, rounding it to the currency's minor unit.
+    RoundingMode.UNNECESSARY rejects amounts with more decimals than the currency has.
+     */
+    public static Money of(BigDecimal amount, String currency, RoundingMode rounding) {
+        int scale = scaleOf(currency);
+        long minorUnits = amount.setScale(scale, rounding).unscaledValue().longValueExact();
+        return new Money(minorUnits, currency, scale);
+    }
+
+    /**
+    Number of decimals of the currency's minor unit, e.g. 2 for USD and 0 for JPY.
+     */
+    public static int scaleOf(String currency) {
+        return SCALES.computeIfAbsent(currency, code -> {
+            try {
+                int digits = Currency.getInstance(code).getDefaultFractionDigits();
+                return digits < 0 ? DEFAULT_SCALE : digits;
+            } catch (IllegalArgumentException e) {
+                return DEFAULT_SCALE;
+            }
+        });
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency, scale);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency, scale);
+    }
+
+    /**
+    The given share of this amount in basis points (100 = 1%), rounded to the minor unit.
+     */
+    public Money basisPoints(long basisPoints, RoundingMode rounding) {
+        return new Money(divide(Math.multiplyExact(minorUnits, basisPoints), 10_000L, rounding), currency, scale);
+    }
+
+    /**
+    Converts into another currency; rate is units of the target currency per unit of this one.
+     */
+    public Money convert(double rate, String targetCurrency, RoundingMode rounding) {
+        int targetScale = scaleOf(targetCurrency);
+        double converted = minorUnits * rate;
+        if (targetScale > scale) {
+            converted *= POWERS_OF_TEN[targetScale - scale];
+        } else if (targetScale < scale) {
+            converted /= POWERS_OF_TEN[scale - targetScale];
+        }
+        return new Money(round(converted, rounding), targetCurrency, targetScale);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && minorUnits == other.minorUnits && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+    }
+
+    //Integer division with BigDecimal rounding semantics
+    static long divide(long dividend, long divisor, RoundingMode rounding) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int sign = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        int half = Long.compare(Math.abs(remainder), Math.abs(divisor) - Math.abs(remainder));
+        return switch (rounding) {
+            case DOWN -> quotient;
+            case UP -> quotient + sign;
+            case FLOOR -> sign < 0 ? quotient - 1 : quotient;
+            case CEILING -> sign > 0 ? quotient + 1 : quotient;
+            case HALF_UP -> half >= 0 ? quotient + sign : quotient;
+            case HALF_DOWN -> half > 0 ? quotient + sign : quotient;
+            case HALF_EVEN -> half > 0 || (half == 0 && (quotient & 1) != 0) ? quotient + sign : quotient;
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+    }
+
+    static long round(double value, RoundingMode rounding) {
+        if (Double.isNaN(value) || Math.abs(value) >= MAX_EXACT_DOUBLE) {
+            throw new ArithmeticException("Amount out of range: " + value);
+        }
+        //1.1 * 100 is 110.00000000000001 in binary; treat such noise as the integer it is
+        double nearest = Math.rint(value);
+        if (Math.abs(value - nearest) <= 4 * Math.ulp(value)) {
+            return (long) nearest;
+        }
+        double rounded = switch (rounding) {
+            case DOWN -> value < 0 ? Math.ceil(value) : Math.floor(value);
+            case UP -> value < 0 ? Math.floor(value) : Math.ceil(value);
+            case FLOOR -> Math.floor(value);
+            case CEILING -> Math.ceil(value);
+            case HALF_UP -> Math.copySign(Math.floor(Math.abs(value) + 0.5), value);
+            case HALF_DOWN -> Math.copySign(Math.ceil(Math.abs(value) - 0.5), value);
+            case HALF_EVEN -> nearest;
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+        return (long) rounded;
+    }
+}
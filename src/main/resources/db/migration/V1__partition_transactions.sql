@@ -0,0 +1,81 @@
+-- transactions becomes range-partitioned by created_at, one partition per month.
+-- A table previously created by ddl-auto is renamed, its rows moved into the new
+-- partitions and then dropped. Flyway runs before Hibernate, so on an empty schema
+-- this creates the table and Hibernate only adds the foreign keys afterwards.
+
+DO $$
+BEGIN
+    IF to_regclass('transactions') IS NOT NULL
+       AND NOT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('transactions')) THEN
+        ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+        ALTER TABLE transactions_unpartitioned RENAME CONSTRAINT transactions_pkey TO transactions_unpartitioned_pkey;
+        ALTER TABLE transactions_unpartitioned ADD COLUMN IF NOT EXISTS rate_version bigint;
+    END IF;
+END $$;
+
+-- The partition key has to be part of the primary key
+CREATE TABLE IF NOT EXISTS transactions (
+    txid         varchar(255) NOT NULL,
+    amount       numeric(38,2),
+    tx_fee       numeric(38,2),
+    sender       varchar(255),
+    receiver     varchar(255),
+    created_at   timestamp(6) NOT NULL,
+    updated_at   timestamp(6),
+    status       smallint,
+    type         varchar(255),
+    rate_version bigint,
+    card_id      varchar(255),
+    owner_id     varchar(255),
+    account_id   varchar(255),
+    PRIMARY KEY (txid, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Creates the partition holding the given month if it does not exist yet and returns its name.
+-- Called by the partition maintenance job to keep a few months ahead of time.
+CREATE OR REPLACE FUNCTION ensure_transactions_partition(month_start date) RETURNS text AS $$
+DECLARE
+    first_day date := date_trunc('month', month_start)::date;
+    partition_name text := 'transactions_' || to_char(first_day, 'YYYY_MM');
+BEGIN
+    IF to_regclass(partition_name) IS NULL THEN
+        BEGIN
+            EXECUTE format('CREATE TABLE %I PARTITION OF transactions FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, first_day, (first_day + interval '1 month')::date);
+        EXCEPTION WHEN duplicate_table THEN
+            NULL; -- created concurrently by another instance
+        END;
+    END IF;
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$
+DECLARE
+    this_month date := date_trunc('month', LOCALTIMESTAMP)::date;
+    month_start date := this_month;
+BEGIN
+    IF to_regclass('transactions_unpartitioned') IS NOT NULL THEN
+        SELECT LEAST(this_month, COALESCE(date_trunc('month', min(COALESCE(created_at, updated_at)))::date, this_month))
+          INTO month_start
+          FROM transactions_unpartitioned;
+    END IF;
+
+    WHILE month_start <= this_month + interval '3 months' LOOP
+        PERFORM ensure_transactions_partition(month_start);
+        month_start := (month_start + interval '1 month')::date;
+    END LOOP;
+
+    IF to_regclass('transactions_unpartitioned') IS NOT NULL THEN
+        INSERT INTO transactions (txid, amount, tx_fee, sender, receiver, created_at, updated_at,
+                                  status, type, rate_version, card_id, owner_id, account_id)
+        SELECT txid, amount, tx_fee, sender, receiver, COALESCE(created_at, updated_at, LOCALTIMESTAMP), updated_at,
+               status, type, rate_version, card_id, owner_id, account_id
+          FROM transactions_unpartitioned;
+        DROP TABLE transactions_unpartitioned;
+    END IF;
+END $$;
+
+-- Same names as the @Index declarations on Transaction, so Hibernate finds them in place
+CREATE INDEX IF NOT EXISTS idx_transactions_owner_created_txid ON transactions (owner_id, created_at, txid);
+CREATE INDEX IF NOT EXISTS idx_transactions_account_created_txid ON transactions (account_id, created_at, txid);
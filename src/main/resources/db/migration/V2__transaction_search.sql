@@ -0,0 +1,11 @@
+-- Descriptions and counterparties are kept with each transaction and indexed for
+-- full-text search. The 'simple' configuration does no stemming or stop words, which
+-- suits account numbers and short labels; queries use prefix matching instead.
+
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS description varchar(255);
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS counterparty varchar(255);
+
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', coalesce(description, '') || ' ' || coalesce(counterparty, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_transactions_search ON transactions USING gin (search_vector);
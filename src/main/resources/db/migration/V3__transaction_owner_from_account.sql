@@ -0,0 +1,15 @@
+-- The receiving side of a transfer used to be stored with the sender as its owner, so
+-- it showed up in the sender's history and never in the receiver's. Account rows now
+-- belong to the owner of their account; this fixes the rows written before.
+-- On an empty schema the accounts table does not exist yet and there is nothing to fix.
+
+DO $$
+BEGIN
+    IF to_regclass('accounts') IS NOT NULL THEN
+        UPDATE transactions t
+           SET owner_id = a.owner_id
+          FROM accounts a
+         WHERE t.account_id = a.accountid
+           AND t.owner_id IS DISTINCT FROM a.owner_id;
+    END IF;
+END $$;
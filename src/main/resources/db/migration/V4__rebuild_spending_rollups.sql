@@ -0,0 +1,25 @@
+-- Spending rollups were keyed by the transaction's owner, which for the receiving side
+-- of a transfer was the sender: senders saw the receiver's deposit in their insights.
+-- Rollups now belong to the owner of the account or card; this recomputes every day
+-- still in the transactions table. Archived months keep their rollups, their
+-- transactions are gone. Nothing to do before the rollups table exists.
+
+DO $$
+BEGIN
+    IF to_regclass('spending_rollups') IS NOT NULL THEN
+        DELETE FROM spending_rollups
+         WHERE rollup_day >= (SELECT min(created_at)::date FROM transactions);
+
+        INSERT INTO spending_rollups (rollupid, owner_uid, rollup_day, currency, type, tx_count, amount, fees)
+        SELECT gen_random_uuid()::text, COALESCE(a.owner_id, c.owner_id, t.owner_id), t.created_at::date,
+               COALESCE(a.code, c.currency), t.type,
+               COUNT(*), COALESCE(SUM(t.amount), 0), COALESCE(SUM(t.tx_fee), 0)
+          FROM transactions t
+          LEFT JOIN accounts a ON a.accountid = t.account_id
+          LEFT JOIN cards c ON c.cardid = t.card_id
+         WHERE t.status = 1
+           AND COALESCE(a.owner_id, c.owner_id, t.owner_id) IS NOT NULL AND t.type IS NOT NULL
+           AND COALESCE(a.code, c.currency) IS NOT NULL
+         GROUP BY COALESCE(a.owner_id, c.owner_id, t.owner_id), t.created_at::date, COALESCE(a.code, c.currency), t.type;
+    END IF;
+END $$;
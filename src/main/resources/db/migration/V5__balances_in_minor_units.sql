@@ -0,0 +1,80 @@
+-- Every balance write now goes through Money, which holds whole minor units (0 decimals
+-- for JPY, KRW and UGX, 2 for the other supported currencies). Balances written before,
+-- by deposits and card operations that skipped it, may hold finer amounts; they are
+-- truncated to the minor unit and the cut-off remainder is journaled against the opening
+-- account, so checkpoint plus postings still equals the stored balance.
+-- On an empty schema the tables do not exist yet and there is nothing to fix.
+
+DO $$
+BEGIN
+    IF to_regclass('accounts') IS NULL OR to_regclass('ledger_entries_seq') IS NULL THEN
+        RETURN;
+    END IF;
+
+    CREATE TEMP TABLE minor_unit_fix (
+        journal_id     varchar(255) NOT NULL,
+        ledger_account varchar(255) NOT NULL,
+        currency       varchar(3)   NOT NULL,
+        remainder      numeric      NOT NULL
+    ) ON COMMIT DROP;
+
+    WITH scaled AS (
+        SELECT accountid, code, balance,
+               trunc(balance, CASE WHEN code IN ('JPY', 'KRW', 'UGX') THEN 0 ELSE 2 END) AS truncated
+          FROM accounts
+         WHERE balance IS NOT NULL
+    ), fixed AS (
+        UPDATE accounts a
+           SET balance = s.truncated
+          FROM scaled s
+         WHERE a.accountid = s.accountid
+           AND s.balance <> s.truncated
+        RETURNING a.accountid, a.code, s.balance - s.truncated AS remainder
+    )
+    INSERT INTO minor_unit_fix SELECT gen_random_uuid()::text, accountid, code, remainder FROM fixed;
+
+    IF to_regclass('account_balance_slots') IS NOT NULL THEN
+        WITH scaled AS (
+            SELECT sl.slotid, sl.account_id, a.code, sl.balance,
+                   trunc(sl.balance, CASE WHEN a.code IN ('JPY', 'KRW', 'UGX') THEN 0 ELSE 2 END) AS truncated
+              FROM account_balance_slots sl
+              JOIN accounts a ON a.accountid = sl.account_id
+             WHERE sl.balance IS NOT NULL
+        ), fixed AS (
+            UPDATE account_balance_slots sl
+               SET balance = s.truncated
+              FROM scaled s
+             WHERE sl.slotid = s.slotid
+               AND s.balance <> s.truncated
+            RETURNING s.account_id, s.code, s.balance - s.truncated AS remainder
+        )
+        INSERT INTO minor_unit_fix SELECT gen_random_uuid()::text, account_id, code, remainder FROM fixed;
+    END IF;
+
+    IF to_regclass('cards') IS NOT NULL THEN
+        WITH scaled AS (
+            SELECT cardid, currency, balance,
+                   trunc(balance, CASE WHEN currency IN ('JPY', 'KRW', 'UGX') THEN 0 ELSE 2 END) AS truncated
+              FROM cards
+             WHERE balance IS NOT NULL
+        ), fixed AS (
+            UPDATE cards c
+               SET balance = s.truncated
+              FROM scaled s
+             WHERE c.cardid = s.cardid
+               AND s.balance <> s.truncated
+            RETURNING c.cardid, c.currency, s.balance - s.truncated AS remainder
+        )
+        INSERT INTO minor_unit_fix SELECT gen_random_uuid()::text, 'card:' || cardid, currency, remainder FROM fixed;
+    END IF;
+
+    -- the remainder leaves the balance for the opening account; a negative one flows back
+    INSERT INTO ledger_entries (entry_id, journal_id, ledger_account, currency, side, amount, created_at)
+    SELECT nextval('ledger_entries_seq'), journal_id, ledger_account, currency,
+           CASE WHEN remainder > 0 THEN 'DEBIT' ELSE 'CREDIT' END, abs(remainder), now()
+      FROM minor_unit_fix
+    UNION ALL
+    SELECT nextval('ledger_entries_seq'), journal_id, 'system:opening', currency,
+           CASE WHEN remainder > 0 THEN 'CREDIT' ELSE 'DEBIT' END, abs(remainder), now()
+      FROM minor_unit_fix;
+END $$;
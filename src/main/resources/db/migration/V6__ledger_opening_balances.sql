@@ -0,0 +1,55 @@
+-- Balances are now read from the ledger (checkpoint plus postings). An account or card whose
+-- money predates the ledger only had it journaled at its first checkpoint, so one that was
+-- never checkpointed would read short. Bring each of them in now with an opening entry for
+-- whatever its stored balance (balance slots included) holds beyond its postings; the first
+-- checkpoint then finds nothing left to open.
+-- On an empty schema the tables do not exist yet and there is nothing to fix.
+
+DO $$
+BEGIN
+    IF to_regclass('accounts') IS NULL OR to_regclass('ledger_entries_seq') IS NULL
+            OR to_regclass('balance_checkpoints') IS NULL THEN
+        RETURN;
+    END IF;
+
+    CREATE TEMP TABLE ledger_opening (
+        journal_id     varchar(255) NOT NULL,
+        ledger_account varchar(255) NOT NULL,
+        currency       varchar(3)   NOT NULL,
+        difference     numeric      NOT NULL
+    ) ON COMMIT DROP;
+
+    INSERT INTO ledger_opening
+    SELECT gen_random_uuid()::text, a.accountid, a.code,
+           COALESCE(a.balance, 0) + COALESCE(sl.total, 0) - COALESCE(le.total, 0)
+      FROM accounts a
+      LEFT JOIN (SELECT account_id, SUM(balance) AS total FROM account_balance_slots GROUP BY account_id) sl
+             ON sl.account_id = a.accountid
+      LEFT JOIN (SELECT ledger_account, SUM(CASE WHEN side = 'CREDIT' THEN amount ELSE -amount END) AS total
+                   FROM ledger_entries GROUP BY ledger_account) le
+             ON le.ledger_account = a.accountid
+     WHERE NOT EXISTS (SELECT 1 FROM balance_checkpoints c WHERE c.ledger_account = a.accountid);
+
+    IF to_regclass('cards') IS NOT NULL THEN
+        INSERT INTO ledger_opening
+        SELECT gen_random_uuid()::text, 'card:' || c.cardid, c.currency,
+               COALESCE(c.balance, 0) - COALESCE(le.total, 0)
+          FROM cards c
+          LEFT JOIN (SELECT ledger_account, SUM(CASE WHEN side = 'CREDIT' THEN amount ELSE -amount END) AS total
+                       FROM ledger_entries GROUP BY ledger_account) le
+                 ON le.ledger_account = 'card:' || c.cardid
+         WHERE NOT EXISTS (SELECT 1 FROM balance_checkpoints bc WHERE bc.ledger_account = 'card:' || c.cardid);
+    END IF;
+
+    DELETE FROM ledger_opening WHERE difference = 0;
+
+    -- same shape as Journal.move(OPENING, account, difference)
+    INSERT INTO ledger_entries (entry_id, journal_id, ledger_account, currency, side, amount, created_at)
+    SELECT nextval('ledger_entries_seq'), journal_id, 'system:opening', currency,
+           CASE WHEN difference > 0 THEN 'DEBIT' ELSE 'CREDIT' END, abs(difference), now()
+      FROM ledger_opening
+    UNION ALL
+    SELECT nextval('ledger_entries_seq'), journal_id, ledger_account, currency,
+           CASE WHEN difference > 0 THEN 'CREDIT' ELSE 'DEBIT' END, abs(difference), now()
+      FROM ledger_opening;
+END $$;
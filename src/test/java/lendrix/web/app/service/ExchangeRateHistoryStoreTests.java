@@ -0,0 +1,105 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import lendrix.web.app.service.ExchangeRateService.RateSnapshot;
+
+class ExchangeRateHistoryStoreTests {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsRateInEffectAtAnInstantAcrossBlocksAndRestarts() throws Exception {
+        ExchangeRateHistoryStore store = open();
+        //200 snapshots span several blocks; the IDR jump is far beyond what an int delta can hold
+        for (int i = 1; i <= 200; i++) {
+            store.append(snapshot(i, i == 150 ? 90_000 : 16_000 + i));
+        }
+        store.close();
+
+        ExchangeRateHistoryStore reopened = open();
+        assertThat(reopened.lastVersion()).isEqualTo(200);
+
+        assertThat(reopened.rateAt("EUR", START.minusSeconds(1))).isEmpty();
+        ExchangeRateHistoryStore.RatePoint point = reopened.rateAt("EUR", START.plusSeconds(3600 * 100 + 59)).orElseThrow();
+        assertThat(point.version()).isEqualTo(100);
+        assertThat(point.rate()).isCloseTo(0.9 + 100 / 10_000.0, within(1e-8));
+        assertThat(reopened.rateAt("IDR", START.plusSeconds(3600 * 150)).orElseThrow().rate()).isCloseTo(90_000, within(1e-8));
+        assertThat(reopened.rateAt("GBP", START.plusSeconds(3600 * 150))).isEmpty();
+
+        assertThat(reopened.range("IDR", START.plusSeconds(3600 * 10), START.plusSeconds(3600 * 19), 1000))
+                .extracting(ExchangeRateHistoryStore.RatePoint::version)
+                .containsExactly(10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L);
+        assertThat(reopened.range("EUR", START, START.plusSeconds(3600 * 300), 20)).hasSize(20);
+        reopened.close();
+    }
+
+    @Test
+    void aDeltaThatDoesNotFitAnIntStartsANewBlockBasedOnTheNewRates() throws Exception {
+        ExchangeRateHistoryStore store = open();
+        //an int delta at 1e8 holds moves of up to about 21.47 from the block's base
+        store.append(snapshot(1, 16_000));
+        store.append(snapshot(2, 16_021));
+        assertThat(blockCount(store)).isEqualTo(1);
+
+        store.append(snapshot(3, 16_022));
+        assertThat(blockCount(store)).isEqualTo(2);
+        store.append(snapshot(4, 16_001));
+        assertThat(blockCount(store)).isEqualTo(2);
+
+        assertThat(store.range("IDR", START, START.plusSeconds(3600 * 4), 10))
+                .extracting(ExchangeRateHistoryStore.RatePoint::rate)
+                .containsExactly(16_000.0, 16_021.0, 16_022.0, 16_001.0);
+        store.close();
+    }
+
+    @Test
+    void storesLargeSwingsExactlyAndDropsRatesBeyondTheFixedPointRange() throws Exception {
+        ExchangeRateHistoryStore store = open();
+        store.append(snapshot(1, 0.0001));
+        store.append(snapshot(2, 40_000_000_000.0));
+        store.append(snapshot(3, 1e12));
+        store.append(snapshot(4, 0.0002));
+
+        assertThat(store.range("IDR", START, START.plusSeconds(3600 * 4), 10))
+                .extracting(ExchangeRateHistoryStore.RatePoint::rate)
+                .containsExactly(0.0001, 40_000_000_000.0, 0.0002);
+        assertThat(store.rateAt("IDR", START.plusSeconds(3600 * 3))).isEmpty();
+        assertThat(store.rateAt("EUR", START.plusSeconds(3600 * 3)).orElseThrow().version()).isEqualTo(3);
+        store.close();
+    }
+
+    private static int blockCount(ExchangeRateHistoryStore store) {
+        return (int) ReflectionTestUtils.getField(store, "blockCount");
+    }
+
+    private ExchangeRateHistoryStore open() throws Exception {
+        ExchangeRateHistoryStore store = new ExchangeRateHistoryStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "path", dir.resolve("fx-history.bin").toString());
+        store.open();
+        return store;
+    }
+
+    //one snapshot per hour; GBP is missing from every snapshot
+    private RateSnapshot snapshot(long version, double idr) {
+        Map<String, Double> rates = new HashMap<>();
+        rates.put("USD", 1.0);
+        rates.put("EUR", 0.9 + version / 10_000.0);
+        rates.put("IDR", idr);
+        return RateSnapshot.of(version, rates, START.plusSeconds(3600 * version), "test");
+    }
+}
@@ -0,0 +1,54 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+class ExchangeRateServiceTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void servesPersistedSnapshotAfterRestartWithoutRefreshing() throws Exception {
+        ExchangeRateService first = service();
+        assertThatThrownBy(() -> first.getSnapshot().crossRate("USD", "EUR"))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(first.refresh()).isTrue();
+        ExchangeRateService.RateSnapshot fetched = first.getSnapshot();
+        assertThat(fetched.version()).isEqualTo(1);
+        assertThat(fetched.crossRate("USD", "EUR")).isEqualTo(0.8612);
+
+        ExchangeRateService restarted = service();
+        ExchangeRateService.RateSnapshot loaded = restarted.getSnapshot();
+        assertThat(loaded.version()).isEqualTo(1);
+        assertThat(loaded.fetchedAt()).isEqualTo(fetched.fetchedAt());
+        assertThat(loaded.crossRate("EUR", "GBP")).isEqualTo(fetched.crossRate("EUR", "GBP"));
+    }
+
+    private ExchangeRateService service() {
+        FileRateProvider provider = new FileRateProvider(new DefaultResourceLoader(), objectMapper);
+        ReflectionTestUtils.setField(provider, "location", "classpath:fx/fixture-rates.json");
+
+        ExchangeRateService service = new ExchangeRateService(provider, new ExchangeRateHistoryStore(), objectMapper);
+        ReflectionTestUtils.setField(service, "snapshotPath", dir.resolve("fx-snapshot.json").toString());
+        ReflectionTestUtils.setField(service, "maxAgeMinutes", Long.MAX_VALUE / 120_000);
+        ReflectionTestUtils.setField(service, "retrySeconds", 60L);
+        service.init();
+        return service;
+    }
+}
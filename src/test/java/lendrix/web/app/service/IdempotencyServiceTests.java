@@ -0,0 +1,81 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lendrix.web.app.entity.IdempotencyRecord;
+import lendrix.web.app.entity.Transaction;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.repository.IdempotencyRecordRepository;
+import lendrix.web.app.repository.TransactionRepository;
+
+class IdempotencyServiceTests {
+
+    private final IdempotencyRecordRepository repository = mock(IdempotencyRecordRepository.class);
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final IdempotencyService service = new IdempotencyService(repository, transactionRepository,
+            new TransactionTemplate(transactionManager), new ObjectMapper(), 24, 100);
+    private final User user = User.builder().uid("u1").username("u1").build();
+
+    @Test
+    void completesTheKeyInsideTheCallsTransactionAndRejectsADifferentBody() throws Exception {
+        when(repository.claim(anyString(), anyString())).thenReturn(1);
+        Transaction transaction = Transaction.builder().txid("t1").build();
+
+        Transaction first = service.execute(user, "transfer", "k1", Map.of("amount", new BigDecimal("10")), () -> transaction);
+        Transaction replay = service.execute(user, "transfer", "k1", Map.of("amount", new BigDecimal("10")), () -> null);
+
+        assertThat(first).isSameAs(transaction);
+        assertThat(replay).isSameAs(transaction);
+        verify(repository).complete("u1:transfer:k1", "t1");
+        verify(transactionManager).commit(any());
+        assertThatThrownBy(() -> service.execute(user, "transfer", "k1", Map.of("amount", new BigDecimal("99")), () -> transaction))
+                .isInstanceOf(IdempotencyService.KeyReusedException.class);
+    }
+
+    @Test
+    void replaysAStoredResultOnlyForTheSameRequest() throws Exception {
+        when(repository.claim(anyString(), anyString())).thenReturn(0);
+        when(repository.takeOverExpired(anyString(), anyString(), anyLong())).thenReturn(0);
+        when(repository.findById("u1:deposit:k2")).thenReturn(Optional.of(
+                new IdempotencyRecord("u1:deposit:k2", Status.COMPLETED, "t2", "another-hash", null)));
+
+        assertThatThrownBy(() -> service.execute(user, "deposit", "k2", Map.of("amount", 5), () -> null))
+                .isInstanceOf(IdempotencyService.KeyReusedException.class);
+        verify(transactionRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void aFailedCallRollsBackAndReleasesTheKey() {
+        when(repository.claim(anyString(), anyString())).thenReturn(1);
+
+        assertThatThrownBy(() -> service.execute(user, "convert", "k3", Map.of("amount", 1), () -> {
+            throw new OperationNotSupportedException("Insufficient funds in the account");
+        })).isInstanceOf(OperationNotSupportedException.class);
+
+        verify(transactionManager).rollback(any());
+        verify(repository, never()).complete(anyString(), anyString());
+        verify(repository).deleteById("u1:convert:k3");
+    }
+}
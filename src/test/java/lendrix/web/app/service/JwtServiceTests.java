@@ -0,0 +1,56 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+class JwtServiceTests {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private final JwtService jwtService = jwtService(SECRET);
+
+    @Test
+    void verifiesIssuedTokensAndRejectsTamperedOrForeignOnes() {
+        String token = jwtService.generateToken("alice");
+
+        assertThat(jwtService.verify(token).getSubject()).isEqualTo("alice");
+        //the second call is answered from the verified-token cache
+        assertThat(jwtService.verify(token).getSubject()).isEqualTo("alice");
+        assertThat(jwtService.isTokenValid(token)).isTrue();
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        assertThat(jwtService.verify(tampered)).isNull();
+        assertThat(jwtService.verify("not-a-token")).isNull();
+        assertThat(jwtService.verify(jwtService("fedcba9876543210fedcba9876543210fedcba9876543210").generateToken("alice"))).isNull();
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        Date now = new Date();
+        String expired = Jwts.builder()
+                .subject("alice")
+                .issuedAt(new Date(now.getTime() - 60_000))
+                .expiration(new Date(now.getTime() - 1_000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .compact();
+
+        assertThat(jwtService.verify(expired)).isNull();
+        assertThat(jwtService.isTokenValid(expired)).isFalse();
+    }
+
+    private static JwtService jwtService(String secret) {
+        JwtService service = new JwtService();
+        ReflectionTestUtils.setField(service, "jwtSecret", secret);
+        ReflectionTestUtils.setField(service, "tokenCacheTtlSeconds", 30L);
+        ReflectionTestUtils.setField(service, "tokenCacheMaxEntries", 100);
+        service.init();
+        return service;
+    }
+}
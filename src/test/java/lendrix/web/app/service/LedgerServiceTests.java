@@ -0,0 +1,76 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lendrix.web.app.entity.BalanceCheckpoint;
+import lendrix.web.app.repository.AccountRepository;
+import lendrix.web.app.repository.BalanceCheckpointRepository;
+import lendrix.web.app.repository.CardRepository;
+import lendrix.web.app.repository.LedgerEntryRepository;
+import lendrix.web.app.service.helper.AccountLockManager;
+import lendrix.web.app.service.helper.HotAccountHelper;
+
+class LedgerServiceTests {
+
+    private final LedgerEntryRepository ledgerEntryRepository = mock(LedgerEntryRepository.class);
+    private final BalanceCheckpointRepository balanceCheckpointRepository = mock(BalanceCheckpointRepository.class);
+    private final LedgerService ledgerService = new LedgerService(ledgerEntryRepository, balanceCheckpointRepository,
+            mock(AccountRepository.class), mock(CardRepository.class), mock(AccountLockManager.class),
+            mock(HotAccountHelper.class), new TransactionTemplate(mock(PlatformTransactionManager.class)));
+
+    @Test
+    void systemAccountsAreCheckpointedPerCurrencyUpToTheEntriesSettledByThePreviousRun() {
+        when(ledgerEntryRepository.findLedgerAccountsPostedSince(any())).thenReturn(List.of(LedgerService.FEES));
+        when(ledgerEntryRepository.findLastEntryId()).thenReturn(100L, 250L);
+        when(balanceCheckpointRepository.findByLedgerAccountStartingWith(LedgerService.FEES + "/")).thenReturn(List.of(
+                new BalanceCheckpoint(LedgerService.FEES + "/USD", "USD", new BigDecimal("5.00"), 40, null)));
+        when(ledgerEntryRepository.sumPostedBetweenByCurrency(LedgerService.FEES, 40, 100)).thenReturn(List.of(
+                new Object[]{"USD", new BigDecimal("1.50")},
+                new Object[]{"EUR", new BigDecimal("0.75")}));
+
+        //the first run only learns which entries will have settled by the next one
+        ledgerService.compactCheckpoints();
+        verify(balanceCheckpointRepository, never()).save(any());
+        verify(ledgerEntryRepository, never()).sumPostedBetweenByCurrency(any(), anyLong(), anyLong());
+
+        ledgerService.compactCheckpoints();
+        ArgumentCaptor<BalanceCheckpoint> saved = ArgumentCaptor.forClass(BalanceCheckpoint.class);
+        verify(balanceCheckpointRepository, times(2)).save(saved.capture());
+        assertThat(saved.getAllValues()).extracting(BalanceCheckpoint::getLedgerAccount)
+                .containsExactly(LedgerService.FEES + "/EUR", LedgerService.FEES + "/USD");
+        assertThat(saved.getAllValues().get(0).getBalance()).isEqualByComparingTo("0.75");
+        assertThat(saved.getAllValues().get(1).getBalance()).isEqualByComparingTo("6.50");
+        assertThat(saved.getAllValues()).allMatch(checkpoint -> checkpoint.getLastEntryId() == 100);
+    }
+
+    @Test
+    void accountBalancesAreTheirCheckpointPlusTheEntriesPostedAfterIt() {
+        when(balanceCheckpointRepository.findAllById(List.of("account-a", "account-b", "account-c"))).thenReturn(List.of(
+                new BalanceCheckpoint("account-a", "USD", new BigDecimal("100.00"), 40, null)));
+        when(ledgerEntryRepository.sumPostedAfterCheckpoints(List.of("account-a", "account-b", "account-c"))).thenReturn(List.of(
+                new Object[]{"account-a", new BigDecimal("-12.50")},
+                new Object[]{"account-b", new BigDecimal("30.00")}));
+
+        Map<String, BigDecimal> balances = ledgerService.balancesOf(List.of("account-a", "account-b", "account-c"));
+
+        assertThat(balances.get("account-a")).isEqualByComparingTo("87.50");
+        assertThat(balances.get("account-b")).isEqualByComparingTo("30.00");
+        assertThat(balances.get("account-c")).isEqualByComparingTo("0");
+    }
+}
@@ -0,0 +1,82 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lendrix.web.app.entity.Account;
+import lendrix.web.app.entity.MoneyRequest;
+import lendrix.web.app.entity.Transaction;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.repository.AccountRepository;
+import lendrix.web.app.repository.MoneyRequestRepository;
+import lendrix.web.app.service.helper.AccountHelper;
+import lendrix.web.app.service.helper.AccountLockManager;
+
+class MoneyRequestSettlementServiceTests {
+
+    private final MoneyRequestRepository moneyRequestRepository = mock(MoneyRequestRepository.class);
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final AccountHelper accountHelper = mock(AccountHelper.class);
+    private final AccountLockManager accountLockManager = mock(AccountLockManager.class);
+    private final MoneyRequestSettlementService service = new MoneyRequestSettlementService(moneyRequestRepository,
+            accountRepository, accountHelper, accountLockManager, mock(NotificationOutboxService.class),
+            new TransactionTemplate(mock(PlatformTransactionManager.class)));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aGroupWhoseTransferFailsIsMarkedFailedWithoutFailingTheOthers() {
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+        User alice = User.builder().uid("alice").username("alice").build();
+        User bob = User.builder().uid("bob").username("bob").build();
+        User carol = User.builder().uid("carol").username("carol").build();
+        Account aliceUsd = account("a-usd", alice);
+        Account bobUsd = account("b-usd", bob);
+        Account carolUsd = account("c-usd", carol);
+
+        MoneyRequest bobPaysAlice = settling(alice, bob, "10.00");
+        MoneyRequest carolPaysAlice = settling(alice, carol, "20.00");
+        when(moneyRequestRepository.findByStatusOrderByCreatedAt(eq("SETTLING"), any()))
+                .thenReturn(List.of(bobPaysAlice, carolPaysAlice));
+        when(accountRepository.findAllByOwnerUidIn(any())).thenReturn(List.of(aliceUsd, bobUsd, carolUsd));
+        when(accountHelper.accountsToLock(any(), any())).thenAnswer(invocation ->
+                List.of(invocation.getArgument(0), invocation.getArgument(1)));
+        when(accountLockManager.withLockedAccounts(any(), any())).thenAnswer(invocation -> {
+            Map<String, Account> locked = new HashMap<>();
+            for (Account account : (Iterable<Account>) invocation.getArgument(0)) {
+                locked.put(account.getAccountid(), account);
+            }
+            return ((Function<Map<String, Account>, Object>) invocation.getArgument(1)).apply(locked);
+        });
+        when(accountHelper.applyTransfer(eq(bobUsd), eq(aliceUsd), any(), any()))
+                .thenThrow(new IllegalStateException("Account 1 is no longer a hot account, retry the transfer"));
+        when(accountHelper.applyTransfer(eq(carolUsd), eq(aliceUsd), any(), any())).thenReturn(new Transaction());
+
+        assertThat(service.settle()).isEqualTo(2);
+
+        assertThat(bobPaysAlice.getStatus()).isEqualTo("FAILED");
+        assertThat(carolPaysAlice.getStatus()).isEqualTo("APPROVED");
+    }
+
+    private static Account account(String accountId, User owner) {
+        return Account.builder().accountid(accountId).code("USD").owner(owner).balance(new BigDecimal("100.00")).build();
+    }
+
+    private static MoneyRequest settling(User requester, User recipient, String amount) {
+        return MoneyRequest.builder().requester(requester).recipient(recipient).amount(new BigDecimal(amount))
+                .currency("USD").status("SETTLING").build();
+    }
+}
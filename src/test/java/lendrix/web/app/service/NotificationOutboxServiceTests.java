@@ -0,0 +1,67 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lendrix.web.app.entity.OutboxNotification;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.enums.NotificationChannel;
+import lendrix.web.app.enums.OutboxStatus;
+import lendrix.web.app.repository.OutboxNotificationRepository;
+
+class NotificationOutboxServiceTests {
+
+    private final OutboxNotificationRepository repository = mock(OutboxNotificationRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final InMemoryNotificationService provider = new InMemoryNotificationService();
+    private final NotificationOutboxService service = new NotificationOutboxService(repository, provider,
+            new TransactionTemplate(transactionManager), new SimpleMeterRegistry());
+
+    @Test
+    void claimsAndCommitsBeforeSendingThenRecordsTheOutcome() {
+        ReflectionTestUtils.setField(service, "batchSize", 10);
+        ReflectionTestUtils.setField(service, "claimSeconds", 60L);
+        OutboxNotification email = pending(OutboxNotification.builder().channel(NotificationChannel.EMAIL)
+                .recipient("a@example.com").subject("Hi").body("Deposit received"));
+        OutboxNotification inApp = pending(OutboxNotification.builder().channel(NotificationChannel.IN_APP)
+                .user(User.builder().uid("u1").build()).body("Card created"));
+        when(repository.findByStatusAndNextAttemptAtLessThanEqualOrderByCreatedAt(eq(OutboxStatus.PENDING), any(), any()))
+                .thenReturn(List.of(email, inApp));
+        when(repository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        //what had been sent, and the email's status, each time a transaction committed
+        List<Integer> sentAtCommit = new ArrayList<>();
+        List<OutboxStatus> statusAtCommit = new ArrayList<>();
+        doAnswer(invocation -> {
+            sentAtCommit.add(provider.getSent().size());
+            statusAtCommit.add(email.getStatus());
+            return null;
+        }).when(transactionManager).commit(any());
+
+        assertThat(service.relay()).isEqualTo(2);
+
+        assertThat(sentAtCommit).containsExactly(0, 2);
+        assertThat(statusAtCommit).containsExactly(OutboxStatus.PENDING, OutboxStatus.SENT);
+        assertThat(provider.getSent()).extracting(InMemoryNotificationService.SentNotification::to)
+                .containsExactly("a@example.com", "u1");
+        assertThat(inApp.getStatus()).isEqualTo(OutboxStatus.SENT);
+    }
+
+    private static OutboxNotification pending(OutboxNotification.OutboxNotificationBuilder notification) {
+        return notification.status(OutboxStatus.PENDING).nextAttemptAt(LocalDateTime.now().minusSeconds(1)).build();
+    }
+}
@@ -0,0 +1,55 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lendrix.web.app.entity.User;
+
+class PrincipalCacheTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PrincipalCache cache = new PrincipalCache(60, 100, meterRegistry);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, User> loader = subject -> {
+        loads.incrementAndGet();
+        return User.builder().uid("u" + loads.get()).username("alice").build();
+    };
+
+    @Test
+    void tokensOfTheSameIssueTimeShareOneLoadUntilTheUserChanges() {
+        Date issuedAt = new Date();
+        Date expiresAt = new Date(issuedAt.getTime() + 3_600_000);
+
+        User first = cache.get("Alice", issuedAt, expiresAt, loader);
+        assertThat(cache.get("alice", issuedAt, expiresAt, loader)).isSameAs(first);
+        assertThat(loads).hasValue(1);
+
+        //a new login is a new token, and a changed user is loaded again
+        cache.get("alice", new Date(issuedAt.getTime() + 1000), expiresAt, loader);
+        cache.invalidate("ALICE");
+        User reloaded = cache.get("alice", issuedAt, expiresAt, loader);
+        assertThat(reloaded).isNotSameAs(first);
+        assertThat(cache.get("alice", issuedAt, expiresAt, loader)).isSameAs(reloaded);
+        assertThat(loads).hasValue(3);
+
+        assertThat(meterRegistry.counter("auth.principal.cache", "result", "hit").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("auth.principal.cache", "result", "miss").count()).isEqualTo(3);
+    }
+
+    @Test
+    void expiredTokensAreNotCached() {
+        Date issuedAt = new Date(System.currentTimeMillis() - 10_000);
+        Date expiredAt = new Date(System.currentTimeMillis() - 1);
+
+        cache.get("alice", issuedAt, expiredAt, loader);
+        cache.get("alice", issuedAt, expiredAt, loader);
+
+        assertThat(loads).hasValue(2);
+    }
+}
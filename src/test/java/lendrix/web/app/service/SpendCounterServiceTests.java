@@ -0,0 +1,105 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import lendrix.web.app.entity.SpendBucket;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.repository.SpendBucketRepository;
+import lendrix.web.app.util.Money;
+
+class SpendCounterServiceTests {
+
+    @Test
+    void ringSumsOnlyHoursInsideTheWindow() {
+        SpendCounterService.SpendWindow window = new SpendCounterService.SpendWindow();
+        long now = 500_000;
+        window.raise(now, new BigDecimal("10"));
+        window.raise(now - 23, new BigDecimal("20"));
+        window.raise(now - 24, new BigDecimal("40"));
+        window.raise(now - 167, new BigDecimal("80"));
+
+        assertThat(window.sum(now, 24)).isEqualByComparingTo("30");
+        assertThat(window.sum(now, 168)).isEqualByComparingTo("150");
+
+        //a week later the old slot is reused, and a stale total for the current hour is ignored
+        window.raise(now + 1, new BigDecimal("5"));
+        window.raise(now, new BigDecimal("7"));
+        assertThat(window.sum(now + 1, 168)).isEqualByComparingTo("75");
+    }
+
+    @Test
+    void checksUseTheCachedRingAfterTheFirstLoad() {
+        long hour = TimeUnit.MILLISECONDS.toHours(System.currentTimeMillis());
+        SpendBucketRepository repository = mock(SpendBucketRepository.class);
+        when(repository.findByOwnerUidAndBucketHourGreaterThanEqual(eq("u1"), anyLong()))
+                .thenReturn(List.of(new SpendBucket("b1", "u1", hour - 30, new BigDecimal("100.00"))));
+        when(repository.add(anyString(), eq("u1"), anyLong(), eq(BigDecimal.ZERO))).thenReturn(BigDecimal.ZERO);
+        when(repository.add(anyString(), eq("u1"), anyLong(), eq(new BigDecimal("250.00"))))
+                .thenReturn(new BigDecimal("250.00"));
+        SpendCounterService service = service(repository);
+
+        assertThat(service.spentInLast("u1", SpendCounterService.DAY_HOURS)).isEqualByComparingTo("0");
+        assertThat(service.spentInLast("u1", SpendCounterService.WEEK_HOURS)).isEqualByComparingTo("100.00");
+
+        User user = new User();
+        user.setUid("u1");
+        service.record(user, Money.ofMinor(25_000, "USD"));
+
+        assertThat(service.spentInLast("u1", SpendCounterService.DAY_HOURS)).isEqualByComparingTo("250.00");
+        assertThat(service.spentInLast("u1", SpendCounterService.WEEK_HOURS)).isEqualByComparingTo("350.00");
+        verify(repository, times(1)).findByOwnerUidAndBucketHourGreaterThanEqual(eq("u1"), anyLong());
+    }
+
+    @Test
+    void recordConvertsToTheReferenceCurrencyAndRejectsTransfersOverTheLimit() {
+        long hour = TimeUnit.MILLISECONDS.toHours(System.currentTimeMillis());
+        SpendBucketRepository repository = mock(SpendBucketRepository.class);
+        when(repository.findByOwnerUidAndBucketHourGreaterThanEqual(eq("u1"), anyLong()))
+                .thenReturn(List.of(new SpendBucket("b1", "u1", hour - 2, new BigDecimal("1500.00"))));
+        //another transfer of the user committed 300.00 in the current hour
+        when(repository.add(anyString(), eq("u1"), eq(hour), eq(BigDecimal.ZERO))).thenReturn(new BigDecimal("300.00"));
+        when(repository.add(anyString(), eq("u1"), eq(hour), eq(new BigDecimal("100.00")))).thenReturn(new BigDecimal("400.00"));
+        SpendCounterService service = service(repository);
+        User user = new User();
+        user.setUid("u1");
+
+        //200 EUR is 250 USD: 1500 + 300 + 250 is over the daily 2000
+        assertThatThrownBy(() -> service.record(user, Money.ofMinor(20_000, "EUR")))
+                .isInstanceOf(SpendCounterService.LimitExceededException.class)
+                .hasMessage("Daily transfer limit exceeded.");
+        verify(repository, times(0)).add(anyString(), eq("u1"), eq(hour), eq(new BigDecimal("250.00")));
+
+        //80 EUR is 100 USD and fits
+        service.record(user, Money.ofMinor(8_000, "EUR"));
+        verify(repository).add(anyString(), eq("u1"), eq(hour), eq(new BigDecimal("100.00")));
+        assertThat(service.spentInLast("u1", SpendCounterService.DAY_HOURS)).isEqualByComparingTo("1900.00");
+    }
+
+    private static SpendCounterService service(SpendBucketRepository repository) {
+        ExchangeRateService exchangeRateService = mock(ExchangeRateService.class);
+        when(exchangeRateService.getSnapshot()).thenReturn(ExchangeRateService.RateSnapshot.of(
+                1, Map.of("USD", 1.0, "EUR", 0.8), Instant.now(), "test"));
+        SpendCounterService service = new SpendCounterService(repository, exchangeRateService);
+        ReflectionTestUtils.setField(service, "maxCachedUsers", 10);
+        ReflectionTestUtils.setField(service, "referenceCurrency", "USD");
+        return service;
+    }
+}
@@ -0,0 +1,115 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lendrix.web.app.dto.SpendingInsightsDto;
+import lendrix.web.app.entity.Account;
+import lendrix.web.app.entity.SpendingRollup;
+import lendrix.web.app.entity.Transaction;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+import lendrix.web.app.repository.SpendingRollupRepository;
+import lendrix.web.app.repository.TransactionRepository;
+
+class SpendingRollupServiceTests {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 10, 1);
+
+    private final SpendingRollupRepository repository = mock(SpendingRollupRepository.class);
+    private final SpendingRollupService service = new SpendingRollupService(repository, mock(TransactionRepository.class),
+            mock(TransactionArchiveStore.class), mock(TransactionTemplate.class));
+
+    @Test
+    void transactionsAreMergedAndWrittenInKeyOrderBeforeCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.record(tx("u2", "USD", Type.WITHDRAW, Status.COMPLETED, "10.00", "0.10"));
+            service.record(tx("u1", "USD", Type.DEPOSIT, Status.COMPLETED, "5.00", "0"));
+            service.record(tx("u2", "USD", Type.WITHDRAW, Status.COMPLETED, "2.50", "0.03"));
+            service.record(tx("u1", "USD", Type.DEPOSIT, Status.FAILED, "99.00", "0"));
+            verify(repository, never()).add(anyString(), any(), anyString(), anyString(), anyLong(), any(), any());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.beforeCommit(false);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        InOrder order = inOrder(repository);
+        order.verify(repository).add("u1", DAY, "USD", "DEPOSIT", 1, new BigDecimal("5.00"), new BigDecimal("0"));
+        order.verify(repository).add("u2", DAY, "USD", "WITHDRAW", 2, new BigDecimal("12.50"), new BigDecimal("0.13"));
+    }
+
+    @Test
+    void transactionsCountForTheOwnerOfTheirAccount() {
+        //the receiving side of a transfer, made by the sender
+        Transaction received = tx("sender", "USD", Type.DEPOSIT, Status.COMPLETED, "20.00", "0");
+        received.setAccount(Account.builder().accountid("a-receiver").code("USD")
+                .owner(User.builder().uid("receiver").build()).build());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.record(received);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.beforeCommit(false);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(repository).add("receiver", DAY, "USD", "DEPOSIT", 1, new BigDecimal("20.00"), new BigDecimal("0"));
+    }
+
+    @Test
+    void insightsSumTheDailyRollupsPerCurrencyAndType() {
+        ReflectionTestUtils.setField(service, "maxDays", 31);
+        when(repository.findByOwnerUidAndRollupDayBetweenOrderByRollupDay("u1", DAY, DAY.plusDays(6))).thenReturn(List.of(
+                new SpendingRollup("r1", "u1", DAY, "USD", Type.WITHDRAW, 2, new BigDecimal("15.00"), new BigDecimal("0.15")),
+                new SpendingRollup("r2", "u1", DAY.plusDays(3), "USD", Type.WITHDRAW, 1, new BigDecimal("5.00"), new BigDecimal("0.05")),
+                new SpendingRollup("r3", "u1", DAY.plusDays(3), "EUR", Type.DEPOSIT, 1, new BigDecimal("7.00"), BigDecimal.ZERO)));
+
+        SpendingInsightsDto insights = service.insights("u1", DAY, DAY.plusDays(6));
+
+        assertThat(insights.getDays()).hasSize(3);
+        assertThat(insights.getTotals()).hasSize(2);
+        assertThat(insights.getTotals().get(0).getCurrency()).isEqualTo("EUR");
+        assertThat(insights.getTotals().get(1).getCount()).isEqualTo(3);
+        assertThat(insights.getTotals().get(1).getAmount()).isEqualByComparingTo("20.00");
+        assertThat(insights.getTotals().get(1).getFees()).isEqualByComparingTo("0.20");
+    }
+
+    private static Transaction tx(String ownerUid, String code, Type type, Status status, String amount, String fee) {
+        return Transaction.builder()
+                .owner(User.builder().uid(ownerUid).build())
+                .account(Account.builder().accountid("a-" + ownerUid).code(code).build())
+                .type(type)
+                .status(status)
+                .amount(new BigDecimal(amount))
+                .txFee(new BigDecimal(fee))
+                .createdAt(LocalDateTime.of(DAY, LocalTime.NOON))
+                .build();
+    }
+}
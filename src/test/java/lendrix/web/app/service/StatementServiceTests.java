@@ -0,0 +1,145 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lendrix.web.app.dto.TransactionSummaryDto;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+import lendrix.web.app.repository.AccountRepository;
+import lendrix.web.app.repository.DailyBalanceRepository;
+import lendrix.web.app.repository.TransactionRepository;
+
+class StatementServiceTests {
+
+    private static final YearMonth MONTH = YearMonth.of(2026, 9);
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final DailyBalanceRepository dailyBalanceRepository = mock(DailyBalanceRepository.class);
+    private final BalanceSnapshotService balanceSnapshotService = mock(BalanceSnapshotService.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesOneLinePerAccountWithItsTransactionsAndResumesFromWrittenChunks() throws Exception {
+        when(balanceSnapshotService.lastFinishedDay()).thenReturn(LocalDate.of(2026, 10, 17));
+        when(accountRepository.findChunkBoundaries(2)).thenReturn(List.of("b", "c"));
+        when(accountRepository.findStatementAccounts(eq(""), eq("b"), any())).thenReturn(List.of(
+                new Object[]{"a", 1001L, "USD", "u1"},
+                new Object[]{"b", 1002L, "EUR", "u2"}));
+        when(accountRepository.findStatementAccounts(eq("b"), eq("c"), any())).thenReturn(List.<Object[]>of(
+                new Object[]{"c", 1003L, "USD", "u3"}));
+        when(dailyBalanceRepository.findBalancesBefore("", "b", MONTH.atDay(1)))
+                .thenReturn(List.<Object[]>of(new Object[]{"a", new BigDecimal("100.00")}));
+        when(dailyBalanceRepository.findBalancesBefore("", "b", MONTH.plusMonths(1).atDay(1)))
+                .thenReturn(List.of(new Object[]{"a", new BigDecimal("85.00")}, new Object[]{"b", new BigDecimal("10.00")}));
+        when(transactionRepository.streamAccountSummaries(eq(""), eq("b"), any(), any(), anyInt())).thenReturn(Stream.of(
+                summary("t1", "a", Type.WITHDRAW, Status.COMPLETED, "10.00", "5.00"),
+                summary("t2", "a", Type.WITHDRAW, Status.FAILED, "50.00", "0"),
+                summary("t3", "b", Type.DEPOSIT, Status.COMPLETED, "10.00", "0")));
+        when(transactionRepository.streamAccountSummaries(eq("b"), eq("c"), any(), any(), anyInt()))
+                .thenThrow(new IllegalStateException("connection lost"));
+
+        StatementService service = service();
+        try {
+            service.generate(MONTH);
+        } catch (IllegalStateException expected) {
+            //the second chunk failed, the first one is kept
+        }
+        assertThat(service.isComplete(MONTH)).isFalse();
+
+        List<JsonNode> lines = read(directory.resolve("2026-09/chunk-00000.ndjson.gz"));
+        assertThat(lines).hasSize(2);
+        JsonNode first = lines.get(0);
+        assertThat(first.get("accountId").asText()).isEqualTo("a");
+        assertThat(first.get("openingBalance").decimalValue()).isEqualByComparingTo("100.00");
+        assertThat(first.get("transactions")).hasSize(2);
+        assertThat(first.get("totals").get("WITHDRAW").decimalValue()).isEqualByComparingTo("10.00");
+        assertThat(first.get("fees").decimalValue()).isEqualByComparingTo("5.00");
+        assertThat(first.get("closingBalance").decimalValue()).isEqualByComparingTo("85.00");
+        JsonNode second = lines.get(1);
+        assertThat(second.get("openingBalance").decimalValue()).isEqualByComparingTo("0");
+        assertThat(second.get("transactions")).hasSize(1);
+
+        //the rerun only processes the missing chunk
+        when(transactionRepository.streamAccountSummaries(eq("b"), eq("c"), any(), any(), anyInt())).thenReturn(Stream.of());
+        StatementService.Summary summary = service.generate(MONTH);
+
+        assertThat(summary.accounts()).isEqualTo(1);
+        assertThat(summary.chunks()).isEqualTo(2);
+        assertThat(service.isComplete(MONTH)).isTrue();
+        assertThat(read(directory.resolve("2026-09/chunk-00001.ndjson.gz"))).hasSize(1);
+        verify(accountRepository).findChunkBoundaries(2);
+    }
+
+    @Test
+    void refusesMonthsThatHaveNotFinished() {
+        when(balanceSnapshotService.lastFinishedDay()).thenReturn(LocalDate.of(2026, 9, 29));
+        StatementService service = service();
+
+        try {
+            service.generate(MONTH);
+        } catch (Exception e) {
+            assertThat(e).isInstanceOf(IllegalArgumentException.class);
+        }
+        verify(accountRepository, never()).findChunkBoundaries(anyInt());
+    }
+
+    private StatementService service() {
+        StatementService service = new StatementService(accountRepository, transactionRepository, dailyBalanceRepository,
+                balanceSnapshotService, mock(PlatformTransactionManager.class), objectMapper, directory.toString());
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        ReflectionTestUtils.setField(service, "parallelism", 2);
+        ReflectionTestUtils.setField(service, "fetchSize", 100);
+        return service;
+    }
+
+    private static TransactionSummaryDto summary(String txid, String accountId, Type type, Status status, String amount, String fee) {
+        return new TransactionSummaryDto(txid, new BigDecimal(amount), new BigDecimal(fee), type, status,
+                LocalDateTime.of(2026, 9, 10, 12, 0), accountId, null, null, "Transfer", null);
+    }
+
+    private List<JsonNode> read(Path file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return reader.lines().map(line -> {
+                try {
+                    return objectMapper.readTree(line);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }).toList();
+        }
+    }
+}
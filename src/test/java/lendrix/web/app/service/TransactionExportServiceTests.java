@@ -0,0 +1,56 @@
+package lendrix.web.app.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lendrix.web.app.dto.TransactionSummaryDto;
+import lendrix.web.app.enums.Status;
+import lendrix.web.app.enums.Type;
+import lendrix.web.app.repository.TransactionRepository;
+
+class TransactionExportServiceTests {
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final TransactionArchiveStore transactionArchiveStore = mock(TransactionArchiveStore.class);
+    private final TransactionExportService service = new TransactionExportService(transactionRepository,
+            transactionArchiveStore, mock(PlatformTransactionManager.class), new ObjectMapper(), 1);
+
+    @Test
+    void archivedMonthsAreExportedBeforeTheRowsStillInTheDatabase() throws Exception {
+        ReflectionTestUtils.setField(service, "fetchSize", 100);
+        ReflectionTestUtils.setField(service, "flushRows", 1000);
+        when(transactionArchiveStore.months()).thenReturn(List.of(YearMonth.of(2025, 1), YearMonth.of(2025, 2)));
+        when(transactionArchiveStore.read(YearMonth.of(2025, 1), "u1")).thenReturn(List.of(summary("t1", "2025-01-10T09:00")));
+        when(transactionArchiveStore.read(YearMonth.of(2025, 2), "u1")).thenReturn(List.of());
+        when(transactionRepository.streamSummaries("u1", 100)).thenReturn(Stream.of(summary("t2", "2025-03-02T12:30")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export("u1", TransactionExportService.Format.CSV, false, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8).lines())
+                .hasSize(3)
+                .element(0).asString().startsWith("txid,");
+        assertThat(out.toString(StandardCharsets.UTF_8).lines().skip(1).map(line -> line.substring(0, 2)))
+                .containsExactly("t1", "t2");
+    }
+
+    private static TransactionSummaryDto summary(String txid, String createdAt) {
+        return new TransactionSummaryDto(txid, new BigDecimal("10.00"), BigDecimal.ZERO, Type.DEPOSIT, Status.COMPLETED,
+                LocalDateTime.parse(createdAt), "a1", null, null, "Deposit", "External");
+    }
+}
@@ -0,0 +1,153 @@
+package lendrix.web.app.service.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lendrix.web.app.entity.Account;
+import lendrix.web.app.entity.Transaction;
+import lendrix.web.app.entity.User;
+import lendrix.web.app.repository.AccountRepository;
+import lendrix.web.app.repository.TransactionRepository;
+import lendrix.web.app.service.LedgerService;
+import lendrix.web.app.service.NotificationOutboxService;
+import lendrix.web.app.service.SpendCounterService;
+import lendrix.web.app.service.SpendingRollupService;
+import lendrix.web.app.util.Money;
+
+class AccountLockManagerTests {
+
+    private static final int ACCOUNTS = 8;
+    private static final int TRANSFERS = 5000;
+
+    @Test
+    void parallelTransfersKeepTotalBalance() throws Exception {
+        EntityManager entityManager = mock(EntityManager.class);
+        when(entityManager.contains(any())).thenReturn(true);
+
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        //the funds check reads the ledger; every account here can always cover a transfer
+        LedgerService ledgerService = mock(LedgerService.class);
+        when(ledgerService.balanceOf(any(Account.class))).thenReturn(Money.ofMinor(1_000_000_00L, "USD"));
+
+        AccountLockManager lockManager = new AccountLockManager(
+                entityManager, new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        AccountHelper accountHelper = new AccountHelper(
+                mock(AccountRepository.class), transactionRepository, null, lockManager,
+                ledgerService, mock(HotAccountHelper.class), mock(NotificationOutboxService.class),
+                mock(SpendCounterService.class), mock(SpendingRollupService.class));
+
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(Account.builder()
+                    .accountid("account-" + i)
+                    .accountNumber(i)
+                    .code("USD")
+                    .balance(new BigDecimal("1000.00"))
+                    .build());
+        }
+        BigDecimal initialTotal = total(accounts);
+        User user = User.builder().uid("user").username("user").build();
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<Transaction>> results = new ArrayList<>();
+        for (int i = 0; i < TRANSFERS; i++) {
+            results.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Account sender = accounts.get(random.nextInt(ACCOUNTS));
+                Account receiver = accounts.get(random.nextInt(ACCOUNTS));
+                return accountHelper.performTransfer(sender, receiver, new BigDecimal("1.00"), user);
+            }));
+        }
+
+        BigDecimal fees = BigDecimal.ZERO;
+        for (Future<Transaction> result : results) {
+            fees = fees.add(result.get().getTxFee());
+        }
+        pool.shutdown();
+
+        assertThat(total(accounts).add(fees)).isEqualByComparingTo(initialTotal);
+    }
+
+    @Test
+    void refusesToLockMoreAccountsUntilTheTransactionHoldingLocksCompletes() {
+        EntityManager entityManager = mock(EntityManager.class);
+        when(entityManager.contains(any())).thenReturn(true);
+        AccountLockManager lockManager = new AccountLockManager(
+                entityManager, new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        Account first = Account.builder().accountid("account-a").build();
+        Account second = Account.builder().accountid("account-b").build();
+
+        assertThatThrownBy(() -> lockManager.withLockedAccounts(List.of(second), locked ->
+                lockManager.withLockedAccounts(List.of(first), inner -> null)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(lockManager.<String>withLockedAccounts(List.of(first), locked -> "locked again")).isEqualTo("locked again");
+
+        //inside a caller's transaction the row locks outlive the call, and so does the refusal
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            lockManager.withLockedAccounts(List.of(second), locked -> null);
+            assertThatThrownBy(() -> lockManager.withLockedAccounts(List.of(first), locked -> null))
+                    .isInstanceOf(IllegalStateException.class);
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(lockManager.<String>withLockedAccounts(List.of(first), locked -> "locked again")).isEqualTo("locked again");
+    }
+
+    @Test
+    void locksRowsInAccountIdOrderWhateverOrderTheyAreGivenIn() {
+        EntityManager entityManager = mock(EntityManager.class);
+        Account a = Account.builder().accountid("account-a").build();
+        Account b = Account.builder().accountid("account-b").build();
+        Account c = Account.builder().accountid("account-c").build();
+        //b is already managed and gets refreshed under the lock, the others are read with it
+        when(entityManager.contains(b)).thenReturn(true);
+        when(entityManager.find(Account.class, "account-a", LockModeType.PESSIMISTIC_WRITE)).thenReturn(a);
+        when(entityManager.find(Account.class, "account-c", LockModeType.PESSIMISTIC_WRITE)).thenReturn(c);
+        AccountLockManager lockManager = new AccountLockManager(
+                entityManager, new TransactionTemplate(mock(PlatformTransactionManager.class)));
+
+        //the two directions of a transfer between the same accounts
+        lockManager.withLockedAccounts(List.of(c, b, a), locked -> null);
+        lockManager.withLockedAccounts(List.of(a, c, b), locked -> null);
+
+        InOrder lockOrder = inOrder(entityManager);
+        for (int call = 0; call < 2; call++) {
+            lockOrder.verify(entityManager).find(Account.class, "account-a", LockModeType.PESSIMISTIC_WRITE);
+            lockOrder.verify(entityManager).refresh(b, LockModeType.PESSIMISTIC_WRITE);
+            lockOrder.verify(entityManager).find(Account.class, "account-c", LockModeType.PESSIMISTIC_WRITE);
+        }
+        lockOrder.verifyNoMoreInteractions();
+    }
+
+    private BigDecimal total(List<Account> accounts) {
+        return accounts.stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,54 @@
+package lendrix.web.app.service.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import lendrix.web.app.entity.Account;
+import lendrix.web.app.entity.AccountBalanceSlot;
+import lendrix.web.app.repository.AccountBalanceSlotRepository;
+import lendrix.web.app.repository.AccountRepository;
+
+class HotAccountHelperTests {
+
+    private final AccountBalanceSlotRepository slotRepository = mock(AccountBalanceSlotRepository.class);
+    private final HotAccountHelper hotAccountHelper = new HotAccountHelper(
+            slotRepository, mock(AccountRepository.class), mock(AccountLockManager.class));
+
+    @Test
+    void twoHotAccountsPayingEachOtherLockTheirSlotsInTheSameOrder() {
+        ReflectionTestUtils.setField(hotAccountHelper, "slotCount", 4);
+        //the account ids whose slots get locked, in the order the locks are taken
+        List<String> slotLocks = new ArrayList<>();
+        when(slotRepository.lockSlot(anyString(), anyInt())).thenAnswer(invocation -> {
+            slotLocks.add(invocation.getArgument(0));
+            return Optional.of(AccountBalanceSlot.builder().balance(BigDecimal.ZERO).build());
+        });
+        when(slotRepository.lockAllByAccountId(anyString())).thenAnswer(invocation -> {
+            slotLocks.add(invocation.getArgument(0));
+            return List.of();
+        });
+
+        //both senders are short, so each sweeps its own slots as well as locking one of the receiver's
+        hotAccountHelper.lockSlotForTransfer(hot("account-a"), hot("account-b"), new BigDecimal("10.00"));
+        assertThat(slotLocks).containsExactly("account-a", "account-b");
+
+        slotLocks.clear();
+        hotAccountHelper.lockSlotForTransfer(hot("account-b"), hot("account-a"), new BigDecimal("10.00"));
+        assertThat(slotLocks).containsExactly("account-a", "account-b");
+    }
+
+    private static Account hot(String accountId) {
+        return Account.builder().accountid(accountId).hot(true).balance(BigDecimal.ZERO).build();
+    }
+}
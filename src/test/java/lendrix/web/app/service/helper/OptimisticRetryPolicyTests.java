@@ -0,0 +1,88 @@
+package lendrix.web.app.service.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OptimisticRetryPolicyTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OptimisticRetryPolicy policy = policy(3, 1, 4);
+
+    @Test
+    void retriesAConflictingAttemptAndRecordsTheRetries() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = policy.execute("card.credit", "card-1", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("stale version");
+            }
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(calls).hasValue(3);
+        assertThat(meterRegistry.get("optimistic.lock.retries").tag("operation", "card.credit").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("optimistic.lock.attempts").tag("operation", "card.credit").summary().max()).isEqualTo(3);
+        assertThat(meterRegistry.find("optimistic.lock.exhausted").counter()).isNull();
+    }
+
+    @Test
+    void rethrowsTheConflictAfterTheLastAttempt() {
+        AtomicInteger calls = new AtomicInteger();
+        OptimisticLockingFailureException conflict = new OptimisticLockingFailureException("stale version");
+
+        assertThatThrownBy(() -> policy.execute("card.credit", "card-1", () -> {
+            calls.incrementAndGet();
+            throw conflict;
+        })).isSameAs(conflict);
+
+        assertThat(calls).hasValue(3);
+        assertThat(meterRegistry.get("optimistic.lock.exhausted").tag("operation", "card.credit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.find("optimistic.lock.attempts").summary()).isNull();
+    }
+
+    @Test
+    void otherFailuresAreNotRetried() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> policy.execute("card.credit", "card-1", () -> {
+            calls.incrementAndGet();
+            throw new IllegalArgumentException("Insufficient balance");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void delaysAreJitteredBelowAnExponentialCeilingUpToTheCap() {
+        OptimisticRetryPolicy policy = policy(10, 10, 200);
+        for (int attempt = 1; attempt <= 8; attempt++) {
+            long ceiling = Math.min(200, 10L << (attempt - 1));
+            Set<Long> delays = new HashSet<>();
+            for (int i = 0; i < 200; i++) {
+                long delay = policy.delayMs(attempt);
+                assertThat(delay).isBetween(0L, ceiling);
+                delays.add(delay);
+            }
+            assertThat(delays).hasSizeGreaterThan(1);
+        }
+    }
+
+    private OptimisticRetryPolicy policy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        OptimisticRetryPolicy policy = new OptimisticRetryPolicy(meterRegistry);
+        ReflectionTestUtils.setField(policy, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(policy, "baseDelayMs", baseDelayMs);
+        ReflectionTestUtils.setField(policy, "maxDelayMs", maxDelayMs);
+        return policy;
+    }
+}
@@ -0,0 +1,27 @@
+package lendrix.web.app.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class CsvTests {
+
+    @Test
+    void roundTripsQuotedFieldsAndNulls() throws Exception {
+        StringWriter out = new StringWriter();
+        Csv.writeRecord(out, "plain", null, "a,b", "say \"hi\"", "two\nlines", "");
+        Csv.writeRecord(out, 1, 2.5);
+
+        assertThat(out.toString()).startsWith("plain,,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",\n");
+
+        BufferedReader in = new BufferedReader(new StringReader(out.toString()));
+        assertThat(Csv.readRecord(in)).isEqualTo(Arrays.asList("plain", null, "a,b", "say \"hi\"", "two\nlines", null));
+        assertThat(Csv.readRecord(in)).containsExactly("1", "2.5");
+        assertThat(Csv.readRecord(in)).isNull();
+    }
+}
@@ -0,0 +1,59 @@
+package lendrix.web.app.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+class MoneyTests {
+
+    @Test
+    void usesCurrencyMinorUnits() {
+        assertThat(Money.of(new BigDecimal("12.34"), "USD", RoundingMode.UNNECESSARY).getMinorUnits()).isEqualTo(1234);
+        assertThat(Money.of(new BigDecimal("1234"), "JPY", RoundingMode.UNNECESSARY).getMinorUnits()).isEqualTo(1234);
+        assertThat(Money.scaleOf("XYZ")).isEqualTo(2);
+
+        assertThatThrownBy(() -> Money.of(new BigDecimal("0.5"), "JPY", RoundingMode.UNNECESSARY))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void basisPointsMatchBigDecimalRounding() {
+        RoundingMode[] modes = { RoundingMode.UP, RoundingMode.DOWN, RoundingMode.CEILING, RoundingMode.FLOOR,
+                                 RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN };
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 10_000; i++) {
+            long minorUnits = random.nextLong(-1_000_000, 1_000_000);
+            long basisPoints = random.nextLong(1, 20_000);
+            for (RoundingMode mode : modes) {
+                BigDecimal expected = BigDecimal.valueOf(minorUnits, 2)
+                        .multiply(BigDecimal.valueOf(basisPoints))
+                        .divide(BigDecimal.valueOf(10_000))
+                        .setScale(2, mode);
+                assertThat(Money.ofMinor(minorUnits, "USD").basisPoints(basisPoints, mode).toBigDecimal())
+                        .as("%d * %d bps %s", minorUnits, basisPoints, mode)
+                        .isEqualByComparingTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void convertsAcrossScales() {
+        Money dollars = Money.of(new BigDecimal("100.00"), "USD", RoundingMode.UNNECESSARY);
+
+        assertThat(dollars.convert(1.1, "EUR", RoundingMode.CEILING).toBigDecimal()).isEqualByComparingTo("110.00");
+        assertThat(dollars.convert(147.256, "JPY", RoundingMode.DOWN).getMinorUnits()).isEqualTo(14725);
+        assertThat(Money.ofMinor(14725, "JPY").convert(1 / 147.256, "USD", RoundingMode.HALF_EVEN).toBigDecimal())
+                .isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void rejectsMixedCurrencies() {
+        assertThatThrownBy(() -> Money.zero("USD").plus(Money.zero("EUR")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}